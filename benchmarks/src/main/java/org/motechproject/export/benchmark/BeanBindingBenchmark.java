@@ -0,0 +1,67 @@
+package org.motechproject.export.benchmark;
+
+import au.com.bytecode.opencsv.CSVReader;
+import au.com.bytecode.opencsv.bean.HeaderColumnNameTranslateMappingStrategy;
+import org.motechproject.importer.model.CSVDataImportProcessor;
+import org.motechproject.importer.model.MyCsvToBean;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing an import file into beans with int, long, double, boolean and String properties: CsvToBean, which converts
+ * through property editors and reflective setters, against the binding CSVDataImportProcessor compiles when the
+ * importer is registered.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BeanBindingBenchmark {
+
+    private static final String HEADER = "id,name,district,msisdn,amount,active";
+
+    @Param({"1000", "100000"})
+    public int rows;
+
+    private String content;
+    private CSVDataImportProcessor importProcessor;
+
+    @Setup
+    public void setUp() {
+        StringBuilder csv = new StringBuilder(HEADER).append('\n');
+        for (int i = 0; i < rows; i++) {
+            csv.append(i).append(",Beneficiary ").append(i).append(",District ").append(i % 37).append(',')
+                    .append(9100000000L + i).append(',').append(i * 1.25).append(',').append(i % 2 == 0).append('\n');
+        }
+        content = csv.toString();
+        importProcessor = new CSVDataImportProcessor(ImportedRecord.class);
+    }
+
+    @Benchmark
+    public List csvToBean() {
+        Map<String, String> columnMapping = new HashMap<>();
+        for (String column : HEADER.split(",")) {
+            columnMapping.put(column, column);
+        }
+        HeaderColumnNameTranslateMappingStrategy strategy = new HeaderColumnNameTranslateMappingStrategy();
+        strategy.setType(ImportedRecord.class);
+        strategy.setColumnMapping(columnMapping);
+        return new MyCsvToBean().parse(strategy, new CSVReader(new StringReader(content)));
+    }
+
+    @Benchmark
+    public List<Object> compiledBinding() {
+        return importProcessor.parse(new StringReader(content));
+    }
+}
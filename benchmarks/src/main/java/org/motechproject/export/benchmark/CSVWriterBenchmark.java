@@ -0,0 +1,36 @@
+package org.motechproject.export.benchmark;
+
+import org.motechproject.export.builder.csv.CSVBuilder;
+import org.motechproject.export.model.ExcelExportProcessor;
+import org.motechproject.export.writer.CSVWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing a whole export as CSV to a sink that discards it: CSVWriter through a writer, CSVBuilder through the
+ * null device since it only writes to files.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CSVWriterBenchmark {
+
+    private static final String NULL_FILE = new File("/dev/null").exists() ? "/dev/null" : "NUL";
+
+    @Benchmark
+    public void csvWriter(SyntheticRecords records) throws IOException {
+        new CSVWriter().writeCSVFromData(new NullWriter(), records.records);
+    }
+
+    @Benchmark
+    public File csvBuilder(SyntheticRecords records) {
+        ExcelExportProcessor excelExportProcessor = new ExcelExportProcessor(new SyntheticReportDataSource(records.records));
+        return new CSVBuilder(NULL_FILE, "allRecords", excelExportProcessor, new HashMap<String, String>()).build();
+    }
+}
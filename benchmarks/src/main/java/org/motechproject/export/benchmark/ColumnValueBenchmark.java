@@ -0,0 +1,53 @@
+package org.motechproject.export.benchmark;
+
+import org.motechproject.export.model.Column;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-cell cost of reading an @ExportValue getter: the reflective Method.invoke path Column used to take
+ * against the method handle it compiles the getter into now.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ColumnValueBenchmark {
+
+    @Param({"getName", "getId", "getAmount"})
+    public String getter;
+
+    private Method method;
+    private Column column;
+    private SyntheticRecord record;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        method = SyntheticRecord.class.getMethod(getter);
+        column = new Column(method);
+        record = new SyntheticRecord(42);
+    }
+
+    @Benchmark
+    public String reflection() {
+        method.setAccessible(true);
+        try {
+            return method.invoke(record).toString();
+        } catch (Exception ignored) {
+        }
+        return "";
+    }
+
+    @Benchmark
+    public String compiledAccessor() {
+        return column.value(record);
+    }
+}
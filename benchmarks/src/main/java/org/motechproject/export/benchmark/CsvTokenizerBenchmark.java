@@ -0,0 +1,76 @@
+package org.motechproject.export.benchmark;
+
+import au.com.bytecode.opencsv.CSVReader;
+import org.motechproject.importer.model.CsvRecord;
+import org.motechproject.importer.model.CsvTokenizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splitting an import file into records: opencsv's CSVReader against the CsvTokenizer the import path uses.
+ * Every tenth row has a quoted field with an embedded separator, doubled quote and line break.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CsvTokenizerBenchmark {
+
+    @Param({"1000", "100000"})
+    public int rows;
+
+    private String content;
+
+    @Setup
+    public void setUp() {
+        StringBuilder csv = new StringBuilder("id,name,district,msisdn,amount,active,registeredOn\n");
+        for (int i = 0; i < rows; i++) {
+            csv.append(i).append(",Beneficiary ").append(i).append(',');
+            if (i % 10 == 0) {
+                csv.append("\"District, \"\"").append(i % 37).append("\"\"\nNorth\"");
+            } else {
+                csv.append("District ").append(i % 37);
+            }
+            csv.append(',').append(9100000000L + i).append(',').append(i * 1.25).append(',').append(i % 2 == 0)
+                    .append(",2013-01-01\n");
+        }
+        content = csv.toString();
+    }
+
+    @Benchmark
+    public void opencsvReader(Blackhole blackhole) throws IOException {
+        CSVReader csvReader = new CSVReader(new StringReader(content), ',');
+        String[] line;
+        while ((line = csvReader.readNext()) != null) {
+            blackhole.consume(line);
+        }
+    }
+
+    @Benchmark
+    public void csvTokenizerRecords(Blackhole blackhole) throws IOException {
+        CsvTokenizer tokenizer = new CsvTokenizer(new StringReader(content));
+        CsvRecord record = new CsvRecord();
+        while (tokenizer.next(record)) {
+            blackhole.consume(record.isBlank());
+        }
+    }
+
+    @Benchmark
+    public void csvTokenizerStrings(Blackhole blackhole) throws IOException {
+        CsvTokenizer tokenizer = new CsvTokenizer(new StringReader(content));
+        CsvRecord record = new CsvRecord();
+        while (tokenizer.next(record)) {
+            blackhole.consume(record.toArray());
+        }
+    }
+}
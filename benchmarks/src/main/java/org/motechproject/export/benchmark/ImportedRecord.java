@@ -0,0 +1,59 @@
+package org.motechproject.export.benchmark;
+
+public class ImportedRecord {
+
+    private int id;
+    private String name;
+    private String district;
+    private long msisdn;
+    private double amount;
+    private boolean active;
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getDistrict() {
+        return district;
+    }
+
+    public void setDistrict(String district) {
+        this.district = district;
+    }
+
+    public long getMsisdn() {
+        return msisdn;
+    }
+
+    public void setMsisdn(long msisdn) {
+        this.msisdn = msisdn;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    public void setAmount(double amount) {
+        this.amount = amount;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public void setActive(boolean active) {
+        this.active = active;
+    }
+}
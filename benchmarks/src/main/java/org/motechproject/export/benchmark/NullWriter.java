@@ -0,0 +1,23 @@
+package org.motechproject.export.benchmark;
+
+import java.io.Writer;
+
+//Discards everything written to it, so that only the cost of producing the CSV is measured.
+public class NullWriter extends Writer {
+
+    @Override
+    public void write(char[] chars, int offset, int length) {
+    }
+
+    @Override
+    public void write(String string, int offset, int length) {
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,35 @@
+package org.motechproject.export.benchmark;
+
+import org.motechproject.export.model.ExportDataModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turning every record of an export into a row: the raw values handed to the Excel builders, and the strings
+ * written to CSV.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RowFormattingBenchmark {
+
+    @Benchmark
+    public void rowValues(SyntheticRecords records, Blackhole blackhole) {
+        ExportDataModel exportDataModel = ExportDataModel.forType(SyntheticRecord.class);
+        for (SyntheticRecord record : records.records) {
+            blackhole.consume(exportDataModel.rowValues(record));
+        }
+    }
+
+    @Benchmark
+    public void rowData(SyntheticRecords records, Blackhole blackhole) {
+        ExportDataModel exportDataModel = ExportDataModel.forType(SyntheticRecord.class);
+        for (SyntheticRecord record : records.records) {
+            blackhole.consume(exportDataModel.rowData(record));
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package org.motechproject.export.benchmark;
+
+import org.motechproject.export.annotation.ExportValue;
+
+import java.util.Date;
+
+public class SyntheticRecord {
+
+    private final int id;
+    private final String name;
+    private final String district;
+    private final long msisdn;
+    private final double amount;
+    private final boolean active;
+    private final Date registeredOn;
+
+    public SyntheticRecord(int id) {
+        this.id = id;
+        this.name = "Beneficiary " + id;
+        this.district = "District " + (id % 37);
+        this.msisdn = 9100000000L + id;
+        this.amount = id * 1.25;
+        this.active = id % 2 == 0;
+        this.registeredOn = new Date(1356998400000L + id * 60000L);
+    }
+
+    @ExportValue(index = 0)
+    public int getId() {
+        return id;
+    }
+
+    @ExportValue(index = 1)
+    public String getName() {
+        return name;
+    }
+
+    @ExportValue(column = "District Name", index = 2)
+    public String getDistrict() {
+        return district;
+    }
+
+    @ExportValue(index = 3)
+    public long getMsisdn() {
+        return msisdn;
+    }
+
+    @ExportValue(index = 4)
+    public double getAmount() {
+        return amount;
+    }
+
+    @ExportValue(index = 5)
+    public boolean isActive() {
+        return active;
+    }
+
+    @ExportValue(index = 6)
+    public Date getRegisteredOn() {
+        return registeredOn;
+    }
+}
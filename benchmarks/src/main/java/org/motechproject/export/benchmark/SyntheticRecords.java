@@ -0,0 +1,29 @@
+package org.motechproject.export.benchmark;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The records exported by one benchmark operation, generated once per trial.
+ */
+@State(Scope.Benchmark)
+public class SyntheticRecords {
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    public List<SyntheticRecord> records;
+
+    @Setup
+    public void setUp() {
+        records = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            records.add(new SyntheticRecord(i));
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package org.motechproject.export.benchmark;
+
+import org.motechproject.export.annotation.DataProvider;
+import org.motechproject.export.annotation.ExcelDataSource;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+@ExcelDataSource(name = "syntheticReport")
+public class SyntheticReportDataSource {
+
+    public static final int PAGE_SIZE = 1000;
+
+    private final List<SyntheticRecord> records;
+
+    public SyntheticReportDataSource(List<SyntheticRecord> records) {
+        this.records = records;
+    }
+
+    @DataProvider
+    public List<SyntheticRecord> syntheticReport(int pageNumber) {
+        int from = (pageNumber - 1) * PAGE_SIZE;
+        if (from >= records.size()) {
+            return Collections.emptyList();
+        }
+        return records.subList(from, Math.min(from + PAGE_SIZE, records.size()));
+    }
+
+    @DataProvider
+    public List<SyntheticRecord> allRecords(Map<String, String> criteria) {
+        return records;
+    }
+}
@@ -0,0 +1,26 @@
+package org.motechproject.export.benchmark;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.motechproject.export.builder.excel.PagedExcelBuilder;
+import org.motechproject.export.model.ExcelExportProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building a whole paged export into an in-memory HSSF workbook, pages of
+ * {@link SyntheticReportDataSource#PAGE_SIZE} records at a time.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class WorkbookBuildingBenchmark {
+
+    @Benchmark
+    public HSSFWorkbook pagedHssfWorkbook(SyntheticRecords records) {
+        ExcelExportProcessor excelExportProcessor = new ExcelExportProcessor(new SyntheticReportDataSource(records.records));
+        return new PagedExcelBuilder(excelExportProcessor, "syntheticReport").build();
+    }
+}
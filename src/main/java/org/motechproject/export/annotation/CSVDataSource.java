@@ -9,4 +9,14 @@ import java.lang.annotation.Target;
 @Target(ElementType.TYPE)
 public @interface CSVDataSource {
     String name();
+
+    /**
+     * Smallest number of records that is formatted in parallel, see RowFormatter. 0 formats every row on the exporting thread.
+     */
+    int parallelThreshold() default 0;
+
+    /**
+     * Seconds the output of an export is kept in the ExportCache, per data source and parameters. 0 does not cache it.
+     */
+    int cacheSeconds() default 0;
 }
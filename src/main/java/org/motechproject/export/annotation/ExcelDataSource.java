@@ -9,4 +9,20 @@ import java.lang.annotation.Target;
 @Target(ElementType.TYPE)
 public @interface ExcelDataSource {
     String name();
+
+    /**
+     * Number of pages fetched ahead on a worker thread while the current page is formatted and written.
+     * 0 fetches every page on the exporting thread, one after the other.
+     */
+    int prefetchPages() default 0;
+
+    /**
+     * Smallest page that is formatted in parallel, see RowFormatter. 0 formats every row on the exporting thread.
+     */
+    int parallelThreshold() default 0;
+
+    /**
+     * Seconds the workbook of a report is kept in the ExportCache. 0 does not cache it.
+     */
+    int cacheSeconds() default 0;
 }
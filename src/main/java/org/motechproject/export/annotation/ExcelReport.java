@@ -0,0 +1,21 @@
+package org.motechproject.export.annotation;
+
+import org.motechproject.export.builder.excel.model.ExcelEngine;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Settings of a single report of an ExcelDataSource, put on its DataProvider method.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface ExcelReport {
+
+    /**
+     * Engine the report is generated with when it is requested without one, instead of the default engine of the ExcelWriter.
+     */
+    ExcelEngine engine();
+}
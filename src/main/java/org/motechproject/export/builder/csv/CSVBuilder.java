@@ -7,10 +7,14 @@ import org.slf4j.LoggerFactory;
 
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 //To be used if data is to be written to a file
 public class CSVBuilder {
@@ -19,14 +23,22 @@ public class CSVBuilder {
     private ExcelExportProcessor excelExportProcessor;
     private Map<String, String> criteria;
     private String reportName;
+    private boolean gzipped;
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
 
     public CSVBuilder(String fileName, String reportName, ExcelExportProcessor excelExportProcessor, Map<String, String> criteria) {
+        this(fileName, reportName, excelExportProcessor, criteria, false);
+    }
+
+    //A gzipped builder writes a .csv.gz file, compressing the rows as they are written.
+    public CSVBuilder(String fileName, String reportName, ExcelExportProcessor excelExportProcessor, Map<String, String> criteria, boolean gzipped) {
         this.reportName = reportName;
         this.excelExportProcessor = excelExportProcessor;
         this.criteria = criteria;
-        file = (fileName == null) ? new File(excelExportProcessor.name() + "-report.csv") : new File(fileName);
+        this.gzipped = gzipped;
+        String defaultFileName = excelExportProcessor.name() + "-report.csv" + (gzipped ? ".gz" : "");
+        file = (fileName == null) ? new File(defaultFileName) : new File(fileName);
     }
 
     public File build() {
@@ -41,7 +53,8 @@ public class CSVBuilder {
     }
 
     private void writeCsvReportToFile() throws IOException {
-        BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(file));
+        Writer writer = gzipped ? new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(file))) : new FileWriter(file);
+        BufferedWriter bufferedWriter = new BufferedWriter(writer);
         ExportData export = excelExportProcessor.getEntirExcelData(reportName, criteria);
         bufferedWriter.write(getCsvRow(export.getColumnHeaders()));
 
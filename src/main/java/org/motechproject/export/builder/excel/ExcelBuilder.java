@@ -20,7 +20,7 @@ public abstract class ExcelBuilder<T> {
                 workbook.addRow(createRowData(datum));
             }
         }
-        return workbook.book();
+        return (HSSFWorkbook) workbook.book();
     }
 
     protected abstract List<String> createRowData(T modal);
@@ -1,9 +1,11 @@
 package org.motechproject.export.builder.excel;
 
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.motechproject.export.builder.excel.model.ExcelEngine;
 import org.motechproject.export.builder.excel.model.Workbook;
+import org.motechproject.export.metrics.ExportMetrics;
 import org.motechproject.export.model.ExcelExportProcessor;
-import org.motechproject.export.model.ExportData;
+import org.motechproject.export.model.ExportRowHandler;
 
 import java.util.List;
 
@@ -13,18 +15,54 @@ public class PagedExcelBuilder {
 
     private ExcelExportProcessor excelExportProcessor;
     private String reportName;
+    private ExcelEngine engine;
+    private ExportMetrics exportMetrics;
 
     public PagedExcelBuilder(ExcelExportProcessor excelExportProcessor, String reportName) {
+        this(excelExportProcessor, reportName, ExcelEngine.HSSF);
+    }
+
+    public PagedExcelBuilder(ExcelExportProcessor excelExportProcessor, String reportName, ExcelEngine engine) {
         this.excelExportProcessor = excelExportProcessor;
         this.reportName = reportName;
+        this.engine = engine;
+    }
+
+    public PagedExcelBuilder(ExcelExportProcessor excelExportProcessor, String reportName, ExcelEngine engine, ExportMetrics exportMetrics) {
+        this(excelExportProcessor, reportName, engine);
+        this.exportMetrics = exportMetrics;
     }
 
     public HSSFWorkbook build() {
-        ExportData pagedExport = excelExportProcessor.getPaginatedExcelData(reportName);
-        workbook = new Workbook(excelExportProcessor.title(), pagedExport.getColumnHeaders());
-        for (List<String> row : pagedExport.getAllRowData())
-            workbook.addRow(row);
-        return workbook.book();
+        if (engine != ExcelEngine.HSSF) {
+            throw new IllegalStateException("Only an HSSF workbook can be built in memory, use buildWorkbook() for " + engine);
+        }
+        return (HSSFWorkbook) buildWorkbook().book();
+    }
+
+    //Rows are added page by page as they are fetched; with the SXSSF engine they are flushed to disk as they go.
+    //A workbook that fails part way is disposed, so its temp files do not outlive the failed export.
+    public Workbook buildWorkbook() {
+        try {
+            excelExportProcessor.streamPaginatedExcelData(reportName, new ExportRowHandler() {
+                @Override
+                public void columnHeaders(List<String> columnHeaders) {
+                    workbook = new Workbook(excelExportProcessor.title(), columnHeaders, engine);
+                }
+
+                @Override
+                public void row(List<?> rowValues) {
+                    workbook.addRow(rowValues);
+                }
+            }, exportMetrics);
+        } catch (RuntimeException | Error e) {
+            if (workbook != null) {
+                workbook.dispose();
+                workbook = null;
+            }
+            throw e;
+        }
+        return workbook;
     }
 
 }
@@ -0,0 +1,40 @@
+package org.motechproject.export.builder.excel.model;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Creates each distinct cell style of a workbook once, so that every worksheet of the workbook shares the same
+ * style records instead of adding its own.
+ */
+public class CellStyleRegistry {
+
+    private final org.apache.poi.ss.usermodel.Workbook workbook;
+    public static final String DATE_FORMAT = "yyyy-mm-dd hh:mm:ss";
+
+    private final Map<Short, CellStyle> motechCellStyles = new HashMap<>();
+    private CellStyle dateCellStyle;
+
+    public CellStyleRegistry(org.apache.poi.ss.usermodel.Workbook workbook) {
+        this.workbook = workbook;
+    }
+
+    public CellStyle motechCellStyle(short alignment) {
+        CellStyle cellStyle = motechCellStyles.get(alignment);
+        if (cellStyle == null) {
+            cellStyle = new MotechCellStyle(workbook, alignment).style();
+            motechCellStyles.put(alignment, cellStyle);
+        }
+        return cellStyle;
+    }
+
+    public CellStyle dateCellStyle() {
+        if (dateCellStyle == null) {
+            dateCellStyle = workbook.createCellStyle();
+            dateCellStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat(DATE_FORMAT));
+        }
+        return dateCellStyle;
+    }
+}
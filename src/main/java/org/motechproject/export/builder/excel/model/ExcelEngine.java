@@ -0,0 +1,69 @@
+package org.motechproject.export.builder.excel.model;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+/**
+ * The POI implementation an Excel export is generated with.
+ * <p/>
+ * HSSF builds the whole .xls workbook in memory. SXSSF writes .xlsx through a sliding window of
+ * {@link #ROW_ACCESS_WINDOW_SIZE} rows and spills older rows to (compressed) temp files, so memory stays
+ * bounded however many rows are exported.
+ */
+public enum ExcelEngine {
+
+    HSSF("xls", "application/vnd.ms-excel", Worksheet.MAX_ROW_INDEX) {
+        @Override
+        public org.apache.poi.ss.usermodel.Workbook createWorkbook() {
+            return new HSSFWorkbook();
+        }
+
+        @Override
+        public void dispose(org.apache.poi.ss.usermodel.Workbook workbook) {
+        }
+    },
+
+    SXSSF("xlsx", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", SpreadsheetVersion.EXCEL2007.getLastRowIndex()) {
+        @Override
+        public org.apache.poi.ss.usermodel.Workbook createWorkbook() {
+            SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_ACCESS_WINDOW_SIZE);
+            workbook.setCompressTempFiles(true);
+            return workbook;
+        }
+
+        @Override
+        public void dispose(org.apache.poi.ss.usermodel.Workbook workbook) {
+            ((SXSSFWorkbook) workbook).dispose();
+        }
+    };
+
+    public static final int ROW_ACCESS_WINDOW_SIZE = 100;
+
+    private final String extension;
+    private final String contentType;
+    private final int maxRowIndex;
+
+    ExcelEngine(String extension, String contentType, int maxRowIndex) {
+        this.extension = extension;
+        this.contentType = contentType;
+        this.maxRowIndex = maxRowIndex;
+    }
+
+    public abstract org.apache.poi.ss.usermodel.Workbook createWorkbook();
+
+    //Removes the temp files backing a streamed workbook; call once the workbook has been written.
+    public abstract void dispose(org.apache.poi.ss.usermodel.Workbook workbook);
+
+    public String extension() {
+        return extension;
+    }
+
+    public String contentType() {
+        return contentType;
+    }
+
+    public int maxRowIndex() {
+        return maxRowIndex;
+    }
+}
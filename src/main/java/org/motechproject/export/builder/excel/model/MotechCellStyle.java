@@ -1,33 +1,37 @@
 package org.motechproject.export.builder.excel.model;
 
-import org.apache.poi.hssf.usermodel.HSSFCellStyle;
-import org.apache.poi.hssf.usermodel.HSSFSheet;
 import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
 
 
 public class MotechCellStyle {
 
     public static final int TITLE_FONT_HEIGHT = 280;
 
-    private HSSFSheet worksheet;
+    private Workbook workbook;
     private short alignment;
 
-    public MotechCellStyle(HSSFSheet worksheet) {
+    public MotechCellStyle(Sheet worksheet) {
         this(worksheet, CellStyle.ALIGN_LEFT);
     }
 
-    public MotechCellStyle(HSSFSheet worksheet, short alignment) {
-        this.worksheet = worksheet;
+    public MotechCellStyle(Sheet worksheet, short alignment) {
+        this(worksheet.getWorkbook(), alignment);
+    }
+
+    public MotechCellStyle(Workbook workbook, short alignment) {
+        this.workbook = workbook;
         this.alignment = alignment;
     }
 
-    public HSSFCellStyle style() {
-        Font font = worksheet.getWorkbook().createFont();
+    public CellStyle style() {
+        Font font = workbook.createFont();
         font.setBoldweight(Font.BOLDWEIGHT_BOLD);
         font.setFontHeight((short) TITLE_FONT_HEIGHT);
 
-        HSSFCellStyle cellStyle = worksheet.getWorkbook().createCellStyle();
+        CellStyle cellStyle = workbook.createCellStyle();
 
         cellStyle.setAlignment(alignment);
         cellStyle.setWrapText(true);
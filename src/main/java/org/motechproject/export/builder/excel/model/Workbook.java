@@ -1,39 +1,59 @@
 package org.motechproject.export.builder.excel.model;
 
-import org.apache.poi.hssf.usermodel.HSSFWorkbook;
-
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 
 public class Workbook {
 
-    private final HSSFWorkbook workbook;
+    private final org.apache.poi.ss.usermodel.Workbook workbook;
+    private final ExcelEngine engine;
+    private final CellStyleRegistry cellStyles;
     private Worksheet worksheet;
     private String title;
     private List<String> columnHeaders;
     private int worksheetNumber;
 
     public Workbook(String title, List<String> columnHeaders) {
+        this(title, columnHeaders, ExcelEngine.HSSF);
+    }
+
+    public Workbook(String title, List<String> columnHeaders, ExcelEngine engine) {
         this.title = title;
         this.columnHeaders = columnHeaders;
+        this.engine = engine;
 
-        workbook = new HSSFWorkbook();
+        workbook = engine.createWorkbook();
+        cellStyles = new CellStyleRegistry(workbook);
 
         worksheetNumber = 0;
         worksheet = newWorksheet();
     }
 
-    public void addRow(List<String> rowData) {
+    public void addRow(List<?> rowData) {
         if (!worksheet.addRow(rowData)) {
             worksheet = newWorksheet();
             worksheet.addRow(rowData);
         }
     }
 
-    public HSSFWorkbook book() {
+    public org.apache.poi.ss.usermodel.Workbook book() {
         return workbook;
     }
 
+    public ExcelEngine engine() {
+        return engine;
+    }
+
+    public void write(OutputStream outputStream) throws IOException {
+        workbook.write(outputStream);
+    }
+
+    public void dispose() {
+        engine.dispose(workbook);
+    }
+
     private Worksheet newWorksheet() {
-        return new Worksheet(workbook, "Worksheet" + (worksheetNumber++), title, columnHeaders);
+        return new Worksheet(workbook, "Worksheet" + (worksheetNumber++), title, columnHeaders, engine.maxRowIndex(), cellStyles);
     }
 }
@@ -1,12 +1,16 @@
 package org.motechproject.export.builder.excel.model;
 
 
-import org.apache.poi.hssf.usermodel.*;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.util.CellRangeAddress;
 
+import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
 import java.util.List;
 
 public class Worksheet {
@@ -16,37 +20,80 @@ public class Worksheet {
     public static final int HEADER_ROW_COUNT = 2;
     public static final int HEADER_ROW_HEIGHT = 500;
     public static final int FIRST_COLUMN = 0;
+    public static final long MAX_EXACT_INTEGER = 1L << 53;
 
     private int currentRowIndex = 0;
+    private final int maxRowIndex;
+    private final CellStyleRegistry cellStyles;
     private List<String> columnHeaders;
-    HSSFSheet sheet;
+    Sheet sheet;
 
-    public Worksheet(HSSFWorkbook workbook, String sheetName, String title, List<String> columnHeaders) {
+    public Worksheet(org.apache.poi.ss.usermodel.Workbook workbook, String sheetName, String title, List<String> columnHeaders) {
+        this(workbook, sheetName, title, columnHeaders, MAX_ROW_INDEX, new CellStyleRegistry(workbook));
+    }
+
+    public Worksheet(org.apache.poi.ss.usermodel.Workbook workbook, String sheetName, String title, List<String> columnHeaders,
+                     int maxRowIndex, CellStyleRegistry cellStyles) {
+        this.maxRowIndex = maxRowIndex;
+        this.cellStyles = cellStyles;
         sheet = workbook.createSheet(sheetName);
         initializeLayout(title, columnHeaders);
         sheet.createFreezePane(0, currentRowIndex);
     }
 
-    public boolean addRow(List<String> rowData) {
+    public boolean addRow(List<?> rowData) {
         if (dataRowIndex() > lastDataRowIndex()) {
             return false;
         } else {
-            HSSFRow row = sheet.createRow(currentRowIndex);
+            Row row = sheet.createRow(currentRowIndex);
             for (int i = 0; i < rowData.size(); i++) {
-                HSSFCell cell = row.createCell(i);
-                cell.setCellValue(rowData.get(i));
+                Object value = rowData.get(i);
+                if (value != null) {
+                    setCellValue(row.createCell(i), value);
+                }
             }
             currentRowIndex++;
         }
         return true;
     }
 
+    //Numbers, dates and booleans are written as native cells; anything else, and numbers Excel cannot hold exactly, as text.
+    private void setCellValue(Cell cell, Object value) {
+        if (value instanceof String) {
+            cell.setCellValue((String) value);
+        } else if (value instanceof Number && isNumericCellValue((Number) value)) {
+            cell.setCellValue(((Number) value).doubleValue());
+        } else if (value instanceof Date) {
+            cell.setCellValue((Date) value);
+            cell.setCellStyle(cellStyles.dateCellStyle());
+        } else if (value instanceof Calendar) {
+            cell.setCellValue((Calendar) value);
+            cell.setCellStyle(cellStyles.dateCellStyle());
+        } else if (value instanceof Boolean) {
+            cell.setCellValue((Boolean) value);
+        } else {
+            cell.setCellValue(value.toString());
+        }
+    }
+
+    private boolean isNumericCellValue(Number value) {
+        if (value instanceof Double || value instanceof Float) {
+            double doubleValue = value.doubleValue();
+            return !Double.isNaN(doubleValue) && !Double.isInfinite(doubleValue);
+        }
+        if (value instanceof BigDecimal) {
+            return BigDecimal.valueOf(value.doubleValue()).compareTo((BigDecimal) value) == 0;
+        }
+        long longValue = value.longValue();
+        return value.doubleValue() == longValue && Math.abs(longValue) <= MAX_EXACT_INTEGER;
+    }
+
     private int dataRowIndex() {
         return currentRowIndex - HEADER_ROW_COUNT;
     }
 
     private int lastDataRowIndex() {
-        return MAX_ROW_INDEX - HEADER_ROW_COUNT;
+        return maxRowIndex - HEADER_ROW_COUNT;
     }
 
     protected void initializeLayout(String title, List<String> columnHeaders) {
@@ -55,12 +102,12 @@ public class Worksheet {
     }
 
     private void buildTitle(String title, int width) {
-        HSSFRow rowTitle = sheet.createRow((short) currentRowIndex);
+        Row rowTitle = sheet.createRow((short) currentRowIndex);
         rowTitle.setHeight((short) TITLE_ROW_HEIGHT);
 
-        HSSFCell cellTitle = rowTitle.createCell(0);
+        Cell cellTitle = rowTitle.createCell(0);
         cellTitle.setCellValue(title);
-        cellTitle.setCellStyle(new MotechCellStyle(sheet, CellStyle.ALIGN_CENTER).style());
+        cellTitle.setCellStyle(cellStyles.motechCellStyle(CellStyle.ALIGN_CENTER));
 
         sheet.addMergedRegion(new CellRangeAddress(currentRowIndex, currentRowIndex, FIRST_COLUMN, width));
         currentRowIndex++;
@@ -72,14 +119,14 @@ public class Worksheet {
     }
 
     private void createHeaderRow() {
-        HSSFCellStyle headerCellStyle = new MotechCellStyle(sheet).style();
+        CellStyle headerCellStyle = cellStyles.motechCellStyle(CellStyle.ALIGN_LEFT);
 
-        HSSFRow headerRow = sheet.createRow((short) currentRowIndex);
+        Row headerRow = sheet.createRow((short) currentRowIndex);
         headerRow.setHeight((short) HEADER_ROW_HEIGHT);
 
         int columnIndex = 0;
         for (ExcelColumn column : columnHeaders()) {
-            HSSFCell cell = headerRow.createCell(columnIndex);
+            Cell cell = headerRow.createCell(columnIndex);
             cell.setCellValue(column.getHeader());
             cell.setCellStyle(headerCellStyle);
             columnIndex++;
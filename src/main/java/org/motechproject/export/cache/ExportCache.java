@@ -0,0 +1,471 @@
+package org.motechproject.export.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rendered export output, kept for the cache TTL of its data source so that the same export with the same
+ * parameters is written from the cache instead of being fetched and formatted again.
+ * <p/>
+ * Output is kept in memory up to the memory budget. The least recently used entries beyond it are spilled to files
+ * in the spill directory, up to the disk budget, and the least recently used files beyond that are deleted. The
+ * captures of exports that are still running hold at most the memory budget between them, and are captured straight
+ * to disk beyond it; output too large for the disk budget is not cached. Character output is cached as UTF-8.
+ * <p/>
+ * Anything that changes the data of a data source, like an importer after its post method, can invalidate its
+ * entries with {@link #invalidate(String)}. Each invalidation moves the data source to a new generation, and output
+ * rendered from an earlier generation is not put in the cache.
+ */
+@Component
+public class ExportCache {
+
+    public static final long DEFAULT_MEMORY_BUDGET = 32 * 1024 * 1024;
+    public static final long DEFAULT_DISK_BUDGET = 512 * 1024 * 1024;
+    public static final Charset CHARSET = Charset.forName("UTF-8");
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final long memoryBudget;
+    private final long diskBudget;
+    private final File spillDirectory;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryUsed;
+    private long diskUsed;
+    private final AtomicLong captureMemoryUsed = new AtomicLong();
+    private final Map<String, Long> invalidations = new HashMap<>();
+    private long allInvalidations;
+
+    public ExportCache() {
+        this(DEFAULT_MEMORY_BUDGET, DEFAULT_DISK_BUDGET, new File(System.getProperty("java.io.tmpdir"), "motech-export-cache"));
+    }
+
+    public ExportCache(long memoryBudget, long diskBudget, File spillDirectory) {
+        this.memoryBudget = memoryBudget;
+        this.diskBudget = diskBudget;
+        this.spillDirectory = spillDirectory;
+    }
+
+    //The cached output of the export, or null when it is not cached or has expired.
+    public InputStream get(Key key) throws IOException {
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.isExpired(System.currentTimeMillis())) {
+                remove(key);
+                return null;
+            }
+            //A spilled file stays readable once it is open, even if it is evicted while it is read.
+            return entry.content != null ? new ByteArrayInputStream(entry.content) : new FileInputStream(entry.file);
+        }
+    }
+
+    //Starts capturing the output of an export, to be cached with put once the export has succeeded.
+    public Capture capture() {
+        return new Capture();
+    }
+
+    //The generation of the data source of the export, to be read before it is rendered and handed to put.
+    public synchronized long generation(Key key) {
+        Long dataSourceInvalidations = invalidations.get(key.dataSourceName);
+        return allInvalidations + (dataSourceInvalidations != null ? dataSourceInvalidations : 0);
+    }
+
+    //Drops the capture if its data source was invalidated since the given generation.
+    public synchronized void put(Key key, Capture capture, long ttlMillis, long generation) throws IOException {
+        capture.close();
+        if (capture.overflowed || generation != generation(key)) {
+            capture.discard();
+            return;
+        }
+        remove(key);
+        Entry entry = new Entry(key, capture.content, capture.file, capture.size, System.currentTimeMillis() + ttlMillis);
+        capture.content = null;
+        capture.file = null;
+        capture.release();
+        entries.put(key, entry);
+        if (entry.content != null) {
+            memoryUsed += entry.size;
+        } else {
+            diskUsed += entry.size;
+        }
+        evict();
+    }
+
+    //Removes the cached output of every export of the data source, which is the group name of an Excel data source.
+    public synchronized void invalidate(String dataSourceName) {
+        Long dataSourceInvalidations = invalidations.get(dataSourceName);
+        invalidations.put(dataSourceName, dataSourceInvalidations != null ? dataSourceInvalidations + 1 : 1);
+        for (Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<Key, Entry> entry = iterator.next();
+            if (entry.getKey().dataSourceName.equals(dataSourceName)) {
+                iterator.remove();
+                release(entry.getValue());
+            }
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        allInvalidations++;
+        for (Entry entry : entries.values()) {
+            release(entry);
+        }
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getMemoryUsed() {
+        return memoryUsed;
+    }
+
+    public synchronized long getDiskUsed() {
+        return diskUsed;
+    }
+
+    //The memory held by captures that are not in the cache.
+    public long getCaptureMemoryUsed() {
+        return captureMemoryUsed.get();
+    }
+
+    private void remove(Key key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            release(entry);
+        }
+    }
+
+    private void release(Entry entry) {
+        if (entry.content != null) {
+            memoryUsed -= entry.size;
+        } else {
+            diskUsed -= entry.size;
+            entry.file.delete();
+        }
+    }
+
+    //Drops expired entries, then spills the least recently used ones out of memory and off the disk.
+    private void evict() {
+        long now = System.currentTimeMillis();
+        for (Iterator<Entry> iterator = entries.values().iterator(); iterator.hasNext(); ) {
+            Entry entry = iterator.next();
+            if (entry.isExpired(now)) {
+                iterator.remove();
+                release(entry);
+            }
+        }
+
+        for (Iterator<Entry> iterator = entries.values().iterator(); iterator.hasNext() && memoryUsed > memoryBudget; ) {
+            Entry entry = iterator.next();
+            if (entry.content != null) {
+                memoryUsed -= entry.size;
+                if (!spill(entry)) {
+                    iterator.remove();
+                }
+            }
+        }
+
+        for (Iterator<Entry> iterator = entries.values().iterator(); iterator.hasNext() && diskUsed > diskBudget; ) {
+            Entry entry = iterator.next();
+            if (entry.content == null) {
+                iterator.remove();
+                release(entry);
+            }
+        }
+    }
+
+    private boolean spill(Entry entry) {
+        if (entry.size > diskBudget) {
+            return false;
+        }
+        try {
+            File file = spillFile();
+            try (OutputStream output = new FileOutputStream(file)) {
+                output.write(entry.content);
+            }
+            entry.file = file;
+            entry.content = null;
+            diskUsed += entry.size;
+            return true;
+        } catch (IOException e) {
+            logger.error("Could not spill the cached export of " + entry.key.dataSourceName + " to disk: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private File spillFile() throws IOException {
+        spillDirectory.mkdirs();
+        return File.createTempFile("export", ".cache", spillDirectory);
+    }
+
+    /**
+     * Identifies the output of one export: the data source, the report, the format and the parameters given to the
+     * data provider. Parameters are compared with equals, so exports with parameters that do not implement it are
+     * only found with the same parameter object.
+     */
+    public static class Key {
+        private final String dataSourceName;
+        private final String reportName;
+        private final String format;
+        private final Object parameters;
+
+        public Key(String dataSourceName, String reportName, String format, Object parameters) {
+            this.dataSourceName = dataSourceName;
+            this.reportName = reportName;
+            this.format = format;
+            this.parameters = parameters;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return Arrays.equals(new Object[]{dataSourceName, reportName, format, parameters},
+                    new Object[]{key.dataSourceName, key.reportName, key.format, key.parameters});
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(new Object[]{dataSourceName, reportName, format, parameters});
+        }
+
+        @Override
+        public String toString() {
+            return dataSourceName + "/" + reportName + "." + format + (parameters != null ? " " + parameters : "");
+        }
+    }
+
+    private static class Entry {
+        private final Key key;
+        private byte[] content;
+        private File file;
+        private final long size;
+        private final long expiresAt;
+
+        private Entry(Key key, byte[] content, File file, long size, long expiresAt) {
+            this.key = key;
+            this.content = content;
+            this.file = file;
+            this.size = size;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+
+    /**
+     * The output of an export as it is written, in memory while the captures fit in the memory budget and then in a
+     * spill file. Output beyond the disk budget is no longer captured. Tee the output of the export through it, and put it in the cache
+     * once the export has succeeded or discard it.
+     * <p/>
+     * Output keeps being captured when writing it to the tee target fails, say because a client went away, so that it
+     * can still be shared and cached; the failure is kept as the target failure.
+     */
+    public class Capture extends OutputStream {
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private byte[] content;
+        private File file;
+        private OutputStream fileOutput;
+        private Writer writer;
+        private long size;
+        private long memoryReserved;
+        private boolean overflowed;
+        private IOException targetFailure;
+
+        private Capture() {
+        }
+
+        public OutputStream tee(final OutputStream outputStream) {
+            return new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    write(new byte[]{(byte) b}, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] bytes, int offset, int length) throws IOException {
+                    Capture.this.write(bytes, offset, length);
+                    try {
+                        if (targetFailure == null) {
+                            outputStream.write(bytes, offset, length);
+                        }
+                    } catch (IOException e) {
+                        targetFailure = e;
+                    }
+                }
+
+                @Override
+                public void flush() {
+                    try {
+                        if (targetFailure == null) {
+                            outputStream.flush();
+                        }
+                    } catch (IOException e) {
+                        targetFailure = e;
+                    }
+                }
+
+                @Override
+                public void close() {
+                    try {
+                        outputStream.close();
+                    } catch (IOException e) {
+                        targetFailure = targetFailure != null ? targetFailure : e;
+                    }
+                }
+            };
+        }
+
+        public Writer tee(final Writer target) {
+            writer = new OutputStreamWriter(this, CHARSET);
+            return new Writer() {
+                @Override
+                public void write(char[] chars, int offset, int length) throws IOException {
+                    writer.write(chars, offset, length);
+                    try {
+                        if (targetFailure == null) {
+                            target.write(chars, offset, length);
+                        }
+                    } catch (IOException e) {
+                        targetFailure = e;
+                    }
+                }
+
+                @Override
+                public void flush() {
+                    try {
+                        if (targetFailure == null) {
+                            target.flush();
+                        }
+                    } catch (IOException e) {
+                        targetFailure = e;
+                    }
+                }
+
+                @Override
+                public void close() {
+                    try {
+                        target.close();
+                    } catch (IOException e) {
+                        targetFailure = targetFailure != null ? targetFailure : e;
+                    }
+                }
+            };
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (overflowed) {
+                return;
+            }
+            size += length;
+            if (size > diskBudget) {
+                overflowed = true;
+                discard();
+                return;
+            }
+            if (buffer != null && !reserve(length)) {
+                file = spillFile();
+                fileOutput = new FileOutputStream(file);
+                buffer.writeTo(fileOutput);
+                buffer = null;
+                release();
+            }
+            if (buffer != null) {
+                buffer.write(bytes, offset, length);
+            } else {
+                fileOutput.write(bytes, offset, length);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (buffer != null) {
+                content = buffer.toByteArray();
+                buffer = null;
+            }
+            if (fileOutput != null) {
+                fileOutput.close();
+                fileOutput = null;
+            }
+        }
+
+        //The first failure to write to the tee target, null if there was none.
+        public IOException getTargetFailure() {
+            return targetFailure;
+        }
+
+        //Reads what was captured once the capture is closed, null if the output was too large to be captured.
+        public InputStream open() throws IOException {
+            if (overflowed) {
+                return null;
+            }
+            return content != null ? new ByteArrayInputStream(content) : new FileInputStream(file);
+        }
+
+        //Drops what was captured; does nothing once the capture is in the cache.
+        public void discard() {
+            buffer = null;
+            content = null;
+            release();
+            if (fileOutput != null) {
+                try {
+                    fileOutput.close();
+                } catch (IOException ignored) {
+                }
+                fileOutput = null;
+            }
+            if (file != null) {
+                file.delete();
+                file = null;
+            }
+        }
+
+        private boolean reserve(long length) {
+            if (captureMemoryUsed.addAndGet(length) > memoryBudget) {
+                captureMemoryUsed.addAndGet(-length);
+                return false;
+            }
+            memoryReserved += length;
+            return true;
+        }
+
+        private void release() {
+            captureMemoryUsed.addAndGet(-memoryReserved);
+            memoryReserved = 0;
+        }
+    }
+}
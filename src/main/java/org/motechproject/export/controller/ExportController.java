@@ -1,9 +1,11 @@
 package org.motechproject.export.controller;
 
+import org.motechproject.export.builder.excel.model.ExcelEngine;
 import org.motechproject.export.service.ExportService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 
@@ -18,27 +20,75 @@ public class ExportController {
     public static final String CONTENT_DISPOSITION = "Content-Disposition";
     public static final String TEXT_CSV = "text/csv";
     public static final String APPLICATION_VND_MS_EXCEL = "application/vnd.ms-excel";
+    public static final String ACCEPT_ENCODING = "Accept-Encoding";
+    public static final String CONTENT_ENCODING = "Content-Encoding";
+    public static final String GZIP = "gzip";
 
     @Autowired
     private ExportService exportService;
 
+    //Named and typed after the engine the report is generated with, which is not HSSF for a report set to another one.
     @RequestMapping(method = RequestMethod.GET, value = "{groupName}/{reportName}.xls")
     public void createExcelReport(@PathVariable("groupName") String groupName, @PathVariable("reportName") String reportName,
                                   HttpServletResponse response) throws IOException {
-        initializeExcelResponse(response, reportName + ".xls");
-        exportService.exportAsExcel(groupName, reportName, response.getOutputStream());
+        ExcelEngine engine = exportService.excelEngine(groupName, reportName);
+        response.setHeader(CONTENT_DISPOSITION, "inline; filename=" + reportName + "." + engine.extension());
+        response.setContentType(engine.contentType());
+        exportService.exportAsExcel(groupName, reportName, response.getOutputStream(), engine);
     }
 
+    @RequestMapping(method = RequestMethod.GET, value = "{groupName}/{reportName}.xlsx")
+    public void createStreamedExcelReport(@PathVariable("groupName") String groupName, @PathVariable("reportName") String reportName,
+                                          HttpServletResponse response) throws IOException {
+        ExcelEngine engine = ExcelEngine.SXSSF;
+        response.setHeader(CONTENT_DISPOSITION, "inline; filename=" + reportName + "." + engine.extension());
+        response.setContentType(engine.contentType());
+        exportService.exportAsExcel(groupName, reportName, response.getOutputStream(), engine);
+    }
+
+    //Gzips the CSV as it is written when the client accepts it.
     @RequestMapping(method = RequestMethod.GET, value = "{groupName}/{reportName}.csv")
     public void createCSVReport(@PathVariable("groupName") String groupName, @PathVariable("reportName") String reportName,
+                                @RequestHeader(value = ACCEPT_ENCODING, required = false) String acceptEncoding,
                                 HttpServletResponse response) throws IOException {
         initializeCSVResponse(response, reportName + ".csv");
+        response.setHeader("Vary", ACCEPT_ENCODING);
+        if (acceptsGzip(acceptEncoding)) {
+            response.setContentType(TEXT_CSV + ";charset=UTF-8");
+            response.setHeader(CONTENT_ENCODING, GZIP);
+            exportService.exportAsGzippedCSV(groupName, response.getOutputStream(), null);
+            return;
+        }
         exportService.exportAsCSV(groupName, response.getWriter());
     }
 
-    private void initializeExcelResponse(HttpServletResponse response, String fileName) {
-        response.setHeader(CONTENT_DISPOSITION, "inline; filename=" + fileName);
-        response.setContentType(APPLICATION_VND_MS_EXCEL);
+    //Whether an Accept-Encoding header accepts gzip, that is lists gzip or * without a zero quality.
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            if (!name.equalsIgnoreCase(GZIP) && !name.equals("*")) {
+                continue;
+            }
+            boolean refused = false;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        refused = Double.parseDouble(parameter.substring(2).trim()) == 0;
+                    } catch (NumberFormatException e) {
+                        refused = true;
+                    }
+                }
+            }
+            if (!refused) {
+                return true;
+            }
+        }
+        return false;
     }
 
 
@@ -0,0 +1,167 @@
+package org.motechproject.export.controller;
+
+import org.motechproject.export.builder.excel.model.ExcelEngine;
+import org.motechproject.export.service.ExportJob;
+import org.motechproject.export.service.ExportJobService;
+import org.motechproject.export.service.ExportService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.GZIPOutputStream;
+
+import static org.motechproject.export.controller.ExportController.ACCEPT_ENCODING;
+import static org.motechproject.export.controller.ExportController.CONTENT_DISPOSITION;
+import static org.motechproject.export.controller.ExportController.CONTENT_ENCODING;
+import static org.motechproject.export.controller.ExportController.GZIP;
+import static org.motechproject.export.controller.ExportController.TEXT_CSV;
+import static org.motechproject.export.controller.ExportController.acceptsGzip;
+
+/**
+ * Submits reports to be generated in the background and hands out their jobs: POST a report to get its job, GET the
+ * job to poll its status and progress, and GET its result once it has completed. The request parameters of a CSV
+ * report are passed to its data provider as a Map, and its result is gzipped for clients that accept it.
+ */
+@RequestMapping(value = "/reports/jobs")
+@Controller
+public class ExportJobController {
+
+    public static final String APPLICATION_JSON = "application/json";
+    public static final String CONTENT_LENGTH = "Content-Length";
+
+    @Autowired
+    private ExportJobService exportJobService;
+    @Autowired
+    private ExportService exportService;
+
+    //Generated with the engine of the report, like the .xls reports of the ExportController.
+    @RequestMapping(method = RequestMethod.POST, value = "{groupName}/{reportName}.xls")
+    public void submitExcelReport(@PathVariable("groupName") String groupName, @PathVariable("reportName") String reportName,
+                                  HttpServletResponse response) throws IOException {
+        submitExcelReport(groupName, reportName, exportService.excelEngine(groupName, reportName), response);
+    }
+
+    @RequestMapping(method = RequestMethod.POST, value = "{groupName}/{reportName}.xlsx")
+    public void submitStreamedExcelReport(@PathVariable("groupName") String groupName, @PathVariable("reportName") String reportName,
+                                          HttpServletResponse response) throws IOException {
+        submitExcelReport(groupName, reportName, ExcelEngine.SXSSF, response);
+    }
+
+    @RequestMapping(method = RequestMethod.POST, value = "{groupName}/{reportName}.csv")
+    public void submitCSVReport(@PathVariable("groupName") String groupName, @PathVariable("reportName") String reportName,
+                                @RequestParam Map<String, String> parameters, HttpServletResponse response) throws IOException {
+        try {
+            Object dataProviderParameters = parameters.isEmpty() ? null : new HashMap<>(parameters);
+            writeJob(exportJobService.submitCSV(groupName, reportName, dataProviderParameters), HttpServletResponse.SC_ACCEPTED, response);
+        } catch (RejectedExecutionException e) {
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Too many reports are being generated");
+        }
+    }
+
+    @RequestMapping(method = RequestMethod.GET, value = "{jobId}")
+    public void getJob(@PathVariable("jobId") String jobId, HttpServletResponse response) throws IOException {
+        ExportJob exportJob = exportJobService.getJob(jobId);
+        if (exportJob == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "No export job " + jobId);
+            return;
+        }
+        writeJob(exportJob, HttpServletResponse.SC_OK, response);
+    }
+
+    @RequestMapping(method = RequestMethod.GET, value = "{jobId}/result")
+    public void getResult(@PathVariable("jobId") String jobId, @RequestHeader(value = ACCEPT_ENCODING, required = false) String acceptEncoding,
+                          HttpServletResponse response) throws IOException {
+        ExportJob exportJob = exportJobService.getJob(jobId);
+        if (exportJob == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "No export job " + jobId);
+            return;
+        }
+        if (exportJob.getResult() == null) {
+            response.sendError(HttpServletResponse.SC_CONFLICT, "Export job " + jobId + " is " + exportJob.getStatus());
+            return;
+        }
+        response.setHeader(CONTENT_DISPOSITION, "attachment; filename=" + exportJob.getFileName());
+        response.setContentType(exportJob.getContentType());
+        if (exportJob.getContentType().startsWith(TEXT_CSV)) {
+            response.setHeader("Vary", ACCEPT_ENCODING);
+            if (acceptsGzip(acceptEncoding)) {
+                response.setHeader(CONTENT_ENCODING, GZIP);
+                try (OutputStream outputStream = new GZIPOutputStream(response.getOutputStream())) {
+                    Files.copy(exportJob.getResult().toPath(), outputStream);
+                }
+                return;
+            }
+        }
+        //Set as a header, as setContentLength takes an int and results can be larger than 2 GB.
+        response.setHeader(CONTENT_LENGTH, String.valueOf(exportJob.getResult().length()));
+        Files.copy(exportJob.getResult().toPath(), response.getOutputStream());
+    }
+
+    private void submitExcelReport(String groupName, String reportName, ExcelEngine engine, HttpServletResponse response) throws IOException {
+        try {
+            writeJob(exportJobService.submitExcel(groupName, reportName, engine), HttpServletResponse.SC_ACCEPTED, response);
+        } catch (RejectedExecutionException e) {
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Too many reports are being generated");
+        }
+    }
+
+    private void writeJob(ExportJob exportJob, int status, HttpServletResponse response) throws IOException {
+        StringBuilder json = new StringBuilder("{")
+                .append("\"id\":\"").append(exportJob.getId()).append("\",")
+                .append("\"status\":\"").append(exportJob.getStatus()).append("\",")
+                .append("\"fileName\":\"").append(jsonEscape(exportJob.getFileName())).append("\",")
+                .append("\"rowsWritten\":").append(exportJob.getRowsWritten()).append(",")
+                .append("\"bytesWritten\":").append(exportJob.getBytesWritten());
+        if (exportJob.getFailure() != null) {
+            json.append(",\"failure\":\"").append(jsonEscape(String.valueOf(exportJob.getFailure()))).append("\"");
+        }
+        json.append("}");
+
+        response.setStatus(status);
+        response.setContentType(APPLICATION_JSON);
+        response.getWriter().write(json.toString());
+    }
+
+    //Escapes a JSON string value: quotes, backslashes and control characters.
+    static String jsonEscape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    escaped.append("\\\"");
+                    break;
+                case '\\':
+                    escaped.append("\\\\");
+                    break;
+                case '\n':
+                    escaped.append("\\n");
+                    break;
+                case '\r':
+                    escaped.append("\\r");
+                    break;
+                case '\t':
+                    escaped.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        escaped.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        escaped.append(c);
+                    }
+            }
+        }
+        return escaped.toString();
+    }
+}
@@ -0,0 +1,27 @@
+package org.motechproject.export.metrics;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+public class CountingOutputStream extends FilterOutputStream {
+
+    private final ExportMetrics exportMetrics;
+
+    public CountingOutputStream(OutputStream outputStream, ExportMetrics exportMetrics) {
+        super(outputStream);
+        this.exportMetrics = exportMetrics;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        exportMetrics.bytesWritten(1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        out.write(bytes, offset, length);
+        exportMetrics.bytesWritten(length);
+    }
+}
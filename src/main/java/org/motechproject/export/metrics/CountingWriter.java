@@ -0,0 +1,34 @@
+package org.motechproject.export.metrics;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+//Counts the characters written, which are only bytes once the writer has encoded them.
+public class CountingWriter extends FilterWriter {
+
+    private final ExportMetrics exportMetrics;
+
+    public CountingWriter(Writer writer, ExportMetrics exportMetrics) {
+        super(writer);
+        this.exportMetrics = exportMetrics;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        out.write(c);
+        exportMetrics.charsWritten(1);
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) throws IOException {
+        out.write(chars, offset, length);
+        exportMetrics.charsWritten(length);
+    }
+
+    @Override
+    public void write(String string, int offset, int length) throws IOException {
+        out.write(string, offset, length);
+        exportMetrics.charsWritten(length);
+    }
+}
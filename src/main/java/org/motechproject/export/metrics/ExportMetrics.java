@@ -0,0 +1,175 @@
+package org.motechproject.export.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Timings and counts of a single export, recorded while it runs and handed to every {@link ExportMetricsListener}
+ * once it is done. Times are in nanoseconds.
+ * <p/>
+ * Formatting time is the time spent turning records into rows, without the time the rows took to be written.
+ * Writing time covers adding the rows to the CSV or workbook and writing the workbook out. For a CSV data provider
+ * returning a lazy Iterable, fetching the records happens while they are formatted and is counted as formatting.
+ */
+public class ExportMetrics {
+
+    private final String dataSourceName;
+    private final String reportName;
+    private final String format;
+    private final long startTime = System.nanoTime();
+
+    private final List<Long> pageFetchTimes = Collections.synchronizedList(new ArrayList<Long>());
+    private final AtomicLong formattingAndHandlerTime = new AtomicLong();
+    private final AtomicLong handlerTime = new AtomicLong();
+    private final AtomicLong otherWritingTime = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong charsWritten = new AtomicLong();
+    private volatile long totalTime = -1;
+    private volatile Throwable failure;
+    private volatile boolean servedFromCache;
+    private volatile boolean shared;
+
+    public ExportMetrics(String dataSourceName, String reportName, String format) {
+        this.dataSourceName = dataSourceName;
+        this.reportName = reportName;
+        this.format = format;
+    }
+
+    public void pageFetched(long time) {
+        pageFetchTimes.add(time);
+    }
+
+    //Time taken to format a page, including the time its rows spent in the row handler.
+    public void pageFormatted(long time) {
+        formattingAndHandlerTime.addAndGet(time);
+    }
+
+    public void headersWritten(long time) {
+        handlerTime.addAndGet(time);
+    }
+
+    public void rowWritten(long time) {
+        rowsWritten.incrementAndGet();
+        handlerTime.addAndGet(time);
+    }
+
+    public void written(long time) {
+        otherWritingTime.addAndGet(time);
+    }
+
+    public void bytesWritten(long bytes) {
+        bytesWritten.addAndGet(bytes);
+    }
+
+    public void charsWritten(long chars) {
+        charsWritten.addAndGet(chars);
+    }
+
+    public void failed(Throwable failure) {
+        this.failure = failure;
+    }
+
+    //The export was written from the ExportCache, so no pages were fetched or rows formatted and written.
+    public void servedFromCache() {
+        servedFromCache = true;
+    }
+
+    //The export was copied from an identical export that was running when it was requested.
+    public void shared() {
+        shared = true;
+    }
+
+    public void completed() {
+        totalTime = System.nanoTime() - startTime;
+    }
+
+    public String getDataSourceName() {
+        return dataSourceName;
+    }
+
+    public String getReportName() {
+        return reportName;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public List<Long> getPageFetchTimes() {
+        synchronized (pageFetchTimes) {
+            return new ArrayList<>(pageFetchTimes);
+        }
+    }
+
+    public long getPageFetchTime() {
+        long pageFetchTime = 0;
+        for (Long time : getPageFetchTimes()) {
+            pageFetchTime += time;
+        }
+        return pageFetchTime;
+    }
+
+    public long getFormattingTime() {
+        return formattingAndHandlerTime.get() - handlerTime.get();
+    }
+
+    public long getWritingTime() {
+        return handlerTime.get() + otherWritingTime.get();
+    }
+
+    public long getRowsWritten() {
+        return rowsWritten.get();
+    }
+
+    //Bytes written to an output stream: the workbook of an Excel export, or the encoded CSV where it is known, as for a
+    //gzipped CSV export or the file of an export job. 0 for a CSV export only written to a Writer.
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    //Characters of a CSV export written to its Writer.
+    public long getCharsWritten() {
+        return charsWritten.get();
+    }
+
+    //End to end latency, -1 until the export has completed.
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    public double getRowsPerSecond() {
+        return totalTime > 0 ? getRowsWritten() * (double) TimeUnit.SECONDS.toNanos(1) / totalTime : 0;
+    }
+
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    public boolean isSuccessful() {
+        return failure == null;
+    }
+
+    public boolean isServedFromCache() {
+        return servedFromCache;
+    }
+
+    public boolean isShared() {
+        return shared;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s/%s.%s: %d rows, %d chars, %d bytes in %d ms (%d pages fetched in %d ms, formatting %d ms, writing %d ms)%s%s%s",
+                dataSourceName, reportName, format, getRowsWritten(), getCharsWritten(), getBytesWritten(), millis(totalTime),
+                getPageFetchTimes().size(), millis(getPageFetchTime()), millis(getFormattingTime()), millis(getWritingTime()),
+                servedFromCache ? ", from cache" : "", shared ? ", shared" : "", isSuccessful() ? "" : ", failed: " + failure);
+    }
+
+    private static long millis(long time) {
+        return TimeUnit.NANOSECONDS.toMillis(time);
+    }
+}
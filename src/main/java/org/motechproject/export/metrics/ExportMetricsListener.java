@@ -0,0 +1,10 @@
+package org.motechproject.export.metrics;
+
+/**
+ * Receives the metrics of every export made through the ExportService, whether it succeeded or failed.
+ * Spring beans implementing this interface are picked up by the ExportService.
+ */
+public interface ExportMetricsListener {
+
+    void exportCompleted(ExportMetrics exportMetrics);
+}
@@ -0,0 +1,31 @@
+package org.motechproject.export.metrics;
+
+import org.motechproject.export.model.ExportRowHandler;
+
+import java.util.List;
+
+//Times the rows handed to the wrapped handler as writing time of an export.
+public class MeteredRowHandler implements ExportRowHandler {
+
+    private final ExportRowHandler rowHandler;
+    private final ExportMetrics exportMetrics;
+
+    public MeteredRowHandler(ExportRowHandler rowHandler, ExportMetrics exportMetrics) {
+        this.rowHandler = rowHandler;
+        this.exportMetrics = exportMetrics;
+    }
+
+    @Override
+    public void columnHeaders(List<String> columnHeaders) {
+        long start = System.nanoTime();
+        rowHandler.columnHeaders(columnHeaders);
+        exportMetrics.headersWritten(System.nanoTime() - start);
+    }
+
+    @Override
+    public void row(List<?> rowValues) {
+        long start = System.nanoTime();
+        rowHandler.row(rowValues);
+        exportMetrics.rowWritten(System.nanoTime() - start);
+    }
+}
@@ -1,8 +1,11 @@
 package org.motechproject.export.model;
 
+import org.apache.commons.collections.IteratorUtils;
 import org.motechproject.export.annotation.CSVDataSource;
 import org.motechproject.export.annotation.ComponentTypeProvider;
 import org.motechproject.export.annotation.DataProvider;
+import org.motechproject.export.metrics.ExportMetrics;
+import org.motechproject.export.metrics.MeteredRowHandler;
 import org.motechproject.export.util.ReflectionUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,72 +13,129 @@ import org.slf4j.LoggerFactory;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class CSVExportProcessor {
 
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
     private Object csvDataSource;
+    private RowFormatter rowFormatter;
+    private long cacheMillis;
 
     public CSVExportProcessor() {
+        rowFormatter = new RowFormatter();
     }
 
     public CSVExportProcessor(Object csvDataSource) {
         this.csvDataSource = csvDataSource;
+        CSVDataSource annotation = csvDataSource.getClass().getAnnotation(CSVDataSource.class);
+        rowFormatter = new RowFormatter(annotation != null ? annotation.parallelThreshold() : 0);
+        cacheMillis = annotation != null ? TimeUnit.SECONDS.toMillis(annotation.cacheSeconds()) : 0;
     }
 
     public String name() {
         return csvDataSource.getClass().getAnnotation(CSVDataSource.class).name();
     }
 
+    //How long the output of an export is cached, 0 when it is not.
+    public long getCacheMillis() {
+        return cacheMillis;
+    }
+
+    public void setCacheMillis(long cacheMillis) {
+        this.cacheMillis = cacheMillis;
+    }
+
+    public void setRowFormatter(RowFormatter rowFormatter) {
+        this.rowFormatter = rowFormatter;
+    }
+
     public static boolean isValidDataSource(Class<?> beanClass) {
         return beanClass.isAnnotationPresent(CSVDataSource.class);
     }
 
     public List<Object> data(Object parameters) {
+        Iterable<Object> records = records(parameters);
+        if (records == null || records instanceof List) {
+            return (List<Object>) records;
+        }
+        List<Object> data = new ArrayList<>();
+        for (Object record : records) {
+            data.add(record);
+        }
+        return data;
+    }
+
+    //The data provider may return any Iterable, so that a lazily fetched result can be streamed without being held in memory.
+    public Iterable<Object> records(Object parameters) {
         Method method = ReflectionUtil.getAnnotatedMethod(csvDataSource, DataProvider.class);
         if (method != null) {
             if (parameters != null)
-                return (List<Object>) ReflectionUtil.invokeMethod(method, csvDataSource, parameters);
-            return (List<Object>) ReflectionUtil.invokeMethod(method, csvDataSource);
+                return (Iterable<Object>) ReflectionUtil.invokeMethod(method, csvDataSource, parameters);
+            return (Iterable<Object>) ReflectionUtil.invokeMethod(method, csvDataSource);
         }
         return new ArrayList<>();
     }
 
     public List<String> columnHeaders(Type returnType) {
-        return new ExportDataModel(returnType).columnHeaders();
+        return ExportDataModel.forType(returnType).columnHeaders();
     }
 
     public List<String> rowData(Object model, Type returnType) {
-        return new ExportDataModel(returnType).rowData(model);
+        return ExportDataModel.forType(returnType).rowData(model);
     }
 
     public ExportData getCSVData(Object parameters) {
-        List data = data(parameters);
-        return formatCSVData(data);
+        ExportDataCollector exportDataCollector = new ExportDataCollector();
+        streamCSVData(parameters, exportDataCollector);
+        return exportDataCollector.exportData();
     }
 
     public ExportData formatCSVData(List data) {
-        List<String> headers;
-        List<List<String>> allRowData = new ArrayList();
-        if (data != null && !data.isEmpty()) {
-            Class<? extends Object> clazz = data.get(0).getClass();
-            headers = columnHeaders(clazz);
-            for (Object datum : data) {
-                allRowData.add(rowData(datum, clazz));
-            }
-        } else
-            headers = getColumnHeadersEvenThoughDataIsNull(data);
-        return new ExportData(headers, allRowData);
-    }
-
-    private List<String> getColumnHeadersEvenThoughDataIsNull(List data) {
+        ExportDataCollector exportDataCollector = new ExportDataCollector();
+        formatCSVData(data, exportDataCollector);
+        return exportDataCollector.exportData();
+    }
+
+    public void streamCSVData(Object parameters, ExportRowHandler rowHandler) {
+        formatCSVData(records(parameters), rowHandler);
+    }
+
+    public void streamCSVData(Object parameters, ExportRowHandler rowHandler, ExportMetrics exportMetrics) {
+        long start = System.nanoTime();
+        Iterable<Object> records = records(parameters);
+        exportMetrics.pageFetched(System.nanoTime() - start);
+
+        start = System.nanoTime();
+        formatCSVData(records, new MeteredRowHandler(rowHandler, exportMetrics));
+        exportMetrics.pageFormatted(System.nanoTime() - start);
+    }
+
+    public void formatCSVData(Iterable data, ExportRowHandler rowHandler) {
+        Iterator iterator = data != null ? data.iterator() : Collections.emptyIterator();
+        if (!iterator.hasNext()) {
+            rowHandler.columnHeaders(getColumnHeadersEvenThoughDataIsNull(data));
+            return;
+        }
+
+        Object first = iterator.next();
+        ExportDataModel exportDataModel = ExportDataModel.forType(first.getClass());
+        rowHandler.columnHeaders(exportDataModel.columnHeaders());
+        rowFormatter.format(exportDataModel, IteratorUtils.chainedIterator(IteratorUtils.singletonIterator(first), iterator), rowHandler);
+    }
+
+    private List<String> getColumnHeadersEvenThoughDataIsNull(Iterable data) {
         Class componentClassType = getComponentClassType(data);
         return columnHeaders(componentClassType);
     }
 
-    private Class getComponentClassType(List data) {
+    private Class getComponentClassType(Iterable data) {
+        if (data == null)
+            return Object.class;
         Object componentClass = ReflectionUtil.invokeAnnotatedMethod(data, ComponentTypeProvider.class);
         return componentClass != null ? (Class) componentClass : Object.class;
     }
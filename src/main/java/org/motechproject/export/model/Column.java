@@ -3,26 +3,31 @@ package org.motechproject.export.model;
 import org.apache.commons.lang.StringUtils;
 import org.motechproject.export.annotation.ExportValue;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 
 import static org.apache.commons.lang.StringUtils.*;
 
 public class Column implements Comparable<Column> {
 
+    private static final MethodType ACCESSOR_TYPE = MethodType.methodType(Object.class, Object.class);
+
     private Method method;
+    private MethodHandle accessor;
     private Integer order;
+    private String name;
 
     public Column(Method method) {
         this.method = method;
         order = method.getAnnotation(ExportValue.class).index();
+        accessor = accessorFor(method);
+        name = nameFor(method);
     }
 
     public String name() {
-        String name = nameFromAnnotation(method);
-        if (name == null) {
-            name = capitalize(method.getName().replace("get", ""));
-            return join(splitByCharacterTypeCamelCase(name), " ");
-        }
         return name;
     }
 
@@ -36,12 +41,31 @@ public class Column implements Comparable<Column> {
     }
 
     public String value(Object model) {
-        method.setAccessible(true);
+        return text(rawValue(model));
+    }
+
+    //The value as returned by the getter, or null when the getter returns null or fails.
+    public Object rawValue(Object model) {
         try {
-            return method.invoke(model).toString();
-        } catch (Exception ignored) {
+            return (Object) accessor.invokeExact(model);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable ignored) {
         }
-        return "";
+        return null;
+    }
+
+    public static String text(Object value) {
+        return value == null ? "" : value.toString();
+    }
+
+    private String nameFor(Method method) {
+        String name = nameFromAnnotation(method);
+        if (name == null) {
+            name = capitalize(method.getName().replace("get", ""));
+            return join(splitByCharacterTypeCamelCase(name), " ");
+        }
+        return name;
     }
 
     private String nameFromAnnotation(Method method) {
@@ -51,4 +75,18 @@ public class Column implements Comparable<Column> {
         }
         return null;
     }
+
+    //Resolves the getter once into a method handle typed (Object)Object, so reading a cell needs no reflective lookup or access check.
+    private static MethodHandle accessorFor(Method method) {
+        method.setAccessible(true);
+        try {
+            MethodHandle handle = MethodHandles.lookup().unreflect(method);
+            if (Modifier.isStatic(method.getModifiers())) {
+                handle = MethodHandles.dropArguments(handle, 0, Object.class);
+            }
+            return handle.asType(ACCESSOR_TYPE);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Export value method " + method.getName() + " is not accessible: " + e.getMessage());
+        }
+    }
 }
@@ -2,6 +2,10 @@ package org.motechproject.export.model;
 
 import org.motechproject.export.annotation.DataProvider;
 import org.motechproject.export.annotation.ExcelDataSource;
+import org.motechproject.export.annotation.ExcelReport;
+import org.motechproject.export.builder.excel.model.ExcelEngine;
+import org.motechproject.export.metrics.ExportMetrics;
+import org.motechproject.export.metrics.MeteredRowHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -11,6 +15,7 @@ import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static org.apache.commons.lang.StringUtils.*;
 
@@ -19,9 +24,16 @@ public class ExcelExportProcessor {
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
     private Object excelDataSource;
+    private int prefetchPages;
+    private RowFormatter rowFormatter;
+    private long cacheMillis;
 
     public ExcelExportProcessor(Object excelDataSource) {
         this.excelDataSource = excelDataSource;
+        ExcelDataSource annotation = excelDataSource.getClass().getAnnotation(ExcelDataSource.class);
+        this.prefetchPages = annotation != null ? annotation.prefetchPages() : 0;
+        this.rowFormatter = new RowFormatter(annotation != null ? annotation.parallelThreshold() : 0);
+        this.cacheMillis = annotation != null ? TimeUnit.SECONDS.toMillis(annotation.cacheSeconds()) : 0;
     }
 
     public String name() {
@@ -81,51 +93,90 @@ public class ExcelExportProcessor {
     }
 
     public List<String> columnHeaders(Type returnType) {
-        return new ExportDataModel(returnType).columnHeaders();
+        return ExportDataModel.forType(returnType).columnHeaders();
     }
 
     public List<String> rowData(Object model, Type returnType) {
-        return new ExportDataModel(returnType).rowData(model);
+        return ExportDataModel.forType(returnType).rowData(model);
     }
 
     public ExportData getEntirExcelData(String reportName, Map<String, String> criteria) {
-        List<String> headers = new ArrayList<>();
-        List<List<String>> allRowData = new ArrayList<>();
+        ExportDataCollector exportDataCollector = new ExportDataCollector();
         List<Object> data = data(reportName, criteria);
         if (data != null && !data.isEmpty()) {
-            Class<? extends Object> clazz = data.get(0).getClass();
-            headers = columnHeaders(clazz);
-            for (Object datum : data) {
-                allRowData.add(rowData(datum, clazz ));
-            }
+            ExportDataModel exportDataModel = ExportDataModel.forType(data.get(0).getClass());
+            exportDataCollector.columnHeaders(exportDataModel.columnHeaders());
+            rowFormatter.format(exportDataModel, data, exportDataCollector);
         }
 
-        return new ExportData(headers, allRowData);
+        return exportDataCollector.exportData();
     }
 
     public ExportData getPaginatedExcelData(String reportName) {
-        boolean doneBuilding = false;
-        int pageNumber = 1;
-        List<String> headers = new ArrayList<>();
-        List<List<String>> allRowData = new ArrayList<>();
-
-        while (!doneBuilding) {
-            List<Object> data = dataForPage(reportName, pageNumber);
-            if (data != null && !data.isEmpty()) {
-                Class<? extends Object> clazz = data.get(0).getClass();
-                headers = columnHeaders(clazz);
-                List<List<String>> rowsOfAPage = new ArrayList<>();
-                for (Object datum : data) {
-                    rowsOfAPage.add(rowData(datum, clazz));
+        ExportDataCollector exportDataCollector = new ExportDataCollector();
+        streamPaginatedExcelData(reportName, exportDataCollector);
+        return exportDataCollector.exportData();
+    }
+
+    public void streamPaginatedExcelData(String reportName, ExportRowHandler rowHandler) {
+        streamPaginatedExcelData(reportName, rowHandler, null);
+    }
+
+    //Hands over the rows of each page as soon as it is fetched, so only the pages in flight are held in memory.
+    public void streamPaginatedExcelData(String reportName, ExportRowHandler rowHandler, ExportMetrics exportMetrics) {
+        boolean headersHandled = false;
+        PageFetcher pageFetcher = new PageFetcher(this, reportName, prefetchPages, exportMetrics);
+        ExportRowHandler pageRowHandler = exportMetrics != null ? new MeteredRowHandler(rowHandler, exportMetrics) : rowHandler;
+
+        try {
+            List<Object> data;
+            while ((data = pageFetcher.nextPage()) != null) {
+                long start = System.nanoTime();
+                ExportDataModel exportDataModel = ExportDataModel.forType(data.get(0).getClass());
+                if (!headersHandled) {
+                    pageRowHandler.columnHeaders(exportDataModel.columnHeaders());
+                    headersHandled = true;
+                }
+                rowFormatter.format(exportDataModel, data, pageRowHandler);
+                if (exportMetrics != null) {
+                    exportMetrics.pageFormatted(System.nanoTime() - start);
                 }
-                allRowData.addAll(rowsOfAPage);
-                pageNumber++;
-            } else {
-                doneBuilding = true;
             }
+        } finally {
+            pageFetcher.close();
         }
 
-        return new ExportData(headers, allRowData);
+        if (!headersHandled) {
+            rowHandler.columnHeaders(new ArrayList<String>());
+        }
+    }
+
+    //The engine set for the report with @ExcelReport, null if it has none.
+    public ExcelEngine engine(String reportName) {
+        Method method = getDataMethod(reportName);
+        ExcelReport excelReport = method != null ? method.getAnnotation(ExcelReport.class) : null;
+        return excelReport != null ? excelReport.engine() : null;
+    }
+
+    public int getPrefetchPages() {
+        return prefetchPages;
+    }
+
+    public void setPrefetchPages(int prefetchPages) {
+        this.prefetchPages = prefetchPages;
+    }
+
+    //How long the workbook of a report is cached, 0 when it is not.
+    public long getCacheMillis() {
+        return cacheMillis;
+    }
+
+    public void setCacheMillis(long cacheMillis) {
+        this.cacheMillis = cacheMillis;
+    }
+
+    public void setRowFormatter(RowFormatter rowFormatter) {
+        this.rowFormatter = rowFormatter;
     }
 
     private Method getDataMethod(String reportName) {
@@ -0,0 +1,24 @@
+package org.motechproject.export.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class ExportDataCollector implements ExportRowHandler {
+
+    private List<String> columnHeaders = new ArrayList<>();
+    private List<List<String>> allRowData = new ArrayList<>();
+
+    @Override
+    public void columnHeaders(List<String> columnHeaders) {
+        this.columnHeaders = columnHeaders;
+    }
+
+    @Override
+    public void row(List<?> rowValues) {
+        allRowData.add(ExportDataModel.rowText(rowValues));
+    }
+
+    public ExportData exportData() {
+        return new ExportData(columnHeaders, allRowData);
+    }
+}
@@ -2,30 +2,68 @@ package org.motechproject.export.model;
 
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class ExportDataModel {
 
-    private final Columns columns;
+    private static final ConcurrentMap<Class, ExportDataModel> exportDataModels = new ConcurrentHashMap<>();
+
+    private final Column[] columns;
+    private final List<String> columnHeaders;
 
     public ExportDataModel(Type returnType) {
-        columns = new Columns((Class) returnType);
-    }
+        Columns columns = new Columns((Class) returnType);
+        this.columns = columns.toArray(new Column[columns.size()]);
 
-    public List<String> columnHeaders() {
-        List<String> columnHeaders = new ArrayList<>();
+        List<String> columnHeaders = new ArrayList<>(columns.size());
         for (Column column : columns) {
             columnHeaders.add(column.name());
         }
+        this.columnHeaders = Collections.unmodifiableList(columnHeaders);
+    }
+
+    //The column schema of a type is resolved once and then shared by every row, page and request exporting it.
+    public static ExportDataModel forType(Type returnType) {
+        Class type = (Class) returnType;
+        ExportDataModel exportDataModel = exportDataModels.get(type);
+        if (exportDataModel == null) {
+            ExportDataModel resolved = new ExportDataModel(type);
+            exportDataModel = exportDataModels.putIfAbsent(type, resolved);
+            if (exportDataModel == null) {
+                exportDataModel = resolved;
+            }
+        }
+        return exportDataModel;
+    }
+
+    public List<String> columnHeaders() {
         return columnHeaders;
     }
 
     public List<String> rowData(Object model) {
-        List<String> rowData = new ArrayList<>();
+        List<String> rowData = new ArrayList<>(columns.length);
         for (Column column : columns) {
             rowData.add(column.value(model));
         }
         return rowData;
     }
 
+    public List<Object> rowValues(Object model) {
+        List<Object> rowValues = new ArrayList<>(columns.length);
+        for (Column column : columns) {
+            rowValues.add(column.rawValue(model));
+        }
+        return rowValues;
+    }
+
+    public static List<String> rowText(List<?> rowValues) {
+        List<String> rowData = new ArrayList<>(rowValues.size());
+        for (Object value : rowValues) {
+            rowData.add(Column.text(value));
+        }
+        return rowData;
+    }
 }
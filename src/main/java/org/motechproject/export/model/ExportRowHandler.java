@@ -0,0 +1,18 @@
+package org.motechproject.export.model;
+
+import java.util.List;
+
+/**
+ * Receives an export one row at a time, so that rows can be written out as soon as they are formatted
+ * instead of being collected into an {@link ExportData} first.
+ * <p/>
+ * Row values are handed over as returned by the {@link org.motechproject.export.annotation.ExportValue} getters,
+ * with null for a getter that returned null or failed. Handlers writing text use
+ * {@link ExportDataModel#rowText(java.util.List)} to get the same strings as {@link ExportData}.
+ */
+public interface ExportRowHandler {
+
+    void columnHeaders(List<String> columnHeaders);
+
+    void row(List<?> rowValues);
+}
@@ -0,0 +1,102 @@
+package org.motechproject.export.model;
+
+import org.motechproject.export.metrics.ExportMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Fetches the pages of a paged report in order. With a prefetch depth the pages are fetched on a worker thread,
+ * at most prefetchDepth pages ahead of the consumer, so that the data source and the formatting overlap.
+ */
+class PageFetcher {
+
+    private static final List<Object> LAST_PAGE = new ArrayList<>();
+
+    private final ExcelExportProcessor excelExportProcessor;
+    private final String reportName;
+    private final ExportMetrics exportMetrics;
+    private int pageNumber = 1;
+    private BlockingQueue<Object> prefetchedPages;
+    private ExecutorService worker;
+
+    PageFetcher(ExcelExportProcessor excelExportProcessor, String reportName, int prefetchDepth, ExportMetrics exportMetrics) {
+        this.excelExportProcessor = excelExportProcessor;
+        this.reportName = reportName;
+        this.exportMetrics = exportMetrics;
+        if (prefetchDepth > 0) {
+            startPrefetching(prefetchDepth);
+        }
+    }
+
+    //Returns null once the data source has no more pages.
+    List<Object> nextPage() {
+        if (prefetchedPages == null) {
+            List<Object> page = fetchPage();
+            return page == LAST_PAGE ? null : page;
+        }
+
+        Object page;
+        try {
+            page = prefetchedPages.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for page " + pageNumber + " of " + reportName);
+        }
+        if (page instanceof RuntimeException)
+            throw (RuntimeException) page;
+        if (page instanceof Error)
+            throw (Error) page;
+        return page == LAST_PAGE ? null : (List<Object>) page;
+    }
+
+    void close() {
+        if (worker != null) {
+            worker.shutdownNow();
+        }
+    }
+
+    private List<Object> fetchPage() {
+        long start = System.nanoTime();
+        List<Object> page = excelExportProcessor.dataForPage(reportName, pageNumber++);
+        if (exportMetrics != null) {
+            exportMetrics.pageFetched(System.nanoTime() - start);
+        }
+        return page == null || page.isEmpty() ? LAST_PAGE : page;
+    }
+
+    private void startPrefetching(int prefetchDepth) {
+        prefetchedPages = new ArrayBlockingQueue<>(prefetchDepth);
+        worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "page-prefetch-" + reportName);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        worker.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    List<Object> page;
+                    do {
+                        page = fetchPage();
+                        prefetchedPages.put(page);
+                    } while (page != LAST_PAGE);
+                } catch (InterruptedException ignored) {
+                } catch (RuntimeException | Error e) {
+                    try {
+                        prefetchedPages.put(e);
+                    } catch (InterruptedException ignored) {
+                    }
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,105 @@
+package org.motechproject.export.model;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Formats records into rows of an {@link ExportDataModel}.
+ * <p/>
+ * With a parallel threshold, batches of at least that many records are split into chunks that are formatted on a
+ * shared fork/join pool. Rows are still handed to the row handler one by one and in record order. Smaller batches,
+ * and every batch when the threshold is 0, are formatted on the calling thread.
+ */
+public class RowFormatter {
+
+    public static final int MIN_BATCH_SIZE = 10000;
+    public static final int MIN_CHUNK_SIZE = 256;
+
+    private static final ForkJoinPool formattingPool = new ForkJoinPool();
+
+    private final int parallelThreshold;
+
+    public RowFormatter() {
+        this(0);
+    }
+
+    public RowFormatter(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    public boolean isParallel() {
+        return parallelThreshold > 0;
+    }
+
+    public void format(ExportDataModel exportDataModel, Iterator<?> records, ExportRowHandler rowHandler) {
+        if (!isParallel()) {
+            while (records.hasNext()) {
+                rowHandler.row(exportDataModel.rowValues(records.next()));
+            }
+            return;
+        }
+
+        int batchSize = Math.max(parallelThreshold, MIN_BATCH_SIZE);
+        List<Object> batch = new ArrayList<>(batchSize);
+        while (records.hasNext()) {
+            batch.add(records.next());
+            if (batch.size() == batchSize) {
+                format(exportDataModel, batch, rowHandler);
+                batch.clear();
+            }
+        }
+        format(exportDataModel, batch, rowHandler);
+    }
+
+    public void format(ExportDataModel exportDataModel, List<?> records, ExportRowHandler rowHandler) {
+        if (!isParallel() || records.size() < parallelThreshold) {
+            for (Object record : records) {
+                rowHandler.row(exportDataModel.rowValues(record));
+            }
+            return;
+        }
+
+        List<?> indexedRecords = records instanceof RandomAccess ? records : new ArrayList<>(records);
+        List<Object>[] rows = new List[indexedRecords.size()];
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, rows.length / (formattingPool.getParallelism() * 4));
+        formattingPool.invoke(new FormatChunk(exportDataModel, indexedRecords, rows, 0, rows.length, chunkSize));
+        for (List<Object> row : rows) {
+            rowHandler.row(row);
+        }
+    }
+
+    private static class FormatChunk extends RecursiveAction {
+        private final ExportDataModel exportDataModel;
+        private final List<?> records;
+        private final List<Object>[] rows;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+
+        private FormatChunk(ExportDataModel exportDataModel, List<?> records, List<Object>[] rows, int from, int to, int chunkSize) {
+            this.exportDataModel = exportDataModel;
+            this.records = records;
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunkSize) {
+                for (int i = from; i < to; i++) {
+                    rows[i] = exportDataModel.rowValues(records.get(i));
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new FormatChunk(exportDataModel, records, rows, from, middle, chunkSize),
+                    new FormatChunk(exportDataModel, records, rows, middle, to, chunkSize));
+        }
+    }
+}
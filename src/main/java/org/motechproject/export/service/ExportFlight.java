@@ -0,0 +1,164 @@
+package org.motechproject.export.service;
+
+import org.motechproject.export.cache.ExportCache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * An export shared by the identical exports requested while it runs. The request that started it renders it, the
+ * others join it, wait for it to finish and copy what it captured. The last request to leave it caches or discards
+ * the capture.
+ * <p/>
+ * Output is only captured when it is to be cached, or once another request has joined. A flight that has started
+ * writing output without capturing it can no longer be joined.
+ * <p/>
+ * A flight renders the generation of its data source that was current when it started, see
+ * {@link ExportCache#generation(ExportCache.Key)}.
+ */
+class ExportFlight {
+
+    private final ExportCache exportCache;
+    private final long generation;
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private volatile ExportCache.Capture capture;
+    private boolean writing;
+    private int sharers = 1;
+    private volatile Throwable failure;
+
+    ExportFlight(ExportCache exportCache, long generation, boolean cached) {
+        this.exportCache = exportCache;
+        this.generation = generation;
+        this.capture = cached ? exportCache.capture() : null;
+    }
+
+    long getGeneration() {
+        return generation;
+    }
+
+    //Null unless the output is captured.
+    ExportCache.Capture getCapture() {
+        return capture;
+    }
+
+    //False once every request sharing the flight has left it, or once it writes output that is not captured.
+    synchronized boolean join() {
+        if (sharers == 0 || (writing && capture == null)) {
+            return false;
+        }
+        if (capture == null) {
+            capture = exportCache.capture();
+        }
+        sharers++;
+        return true;
+    }
+
+    //True for the last request to leave the flight.
+    synchronized boolean leave() {
+        return --sharers == 0;
+    }
+
+    //The output of the request that renders the export, captured if the flight is captured once it starts writing.
+    OutputStream tee(final OutputStream target) {
+        return new OutputStream() {
+            private OutputStream output;
+
+            @Override
+            public void write(int b) throws IOException {
+                output().write(b);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                output().write(bytes, offset, length);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                output().flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                output().close();
+            }
+
+            private OutputStream output() {
+                if (output == null) {
+                    ExportCache.Capture capture = startWriting();
+                    output = capture != null ? capture.tee(target) : target;
+                }
+                return output;
+            }
+        };
+    }
+
+    Writer tee(final Writer target) {
+        return new Writer() {
+            private Writer writer;
+
+            @Override
+            public void write(char[] chars, int offset, int length) throws IOException {
+                writer().write(chars, offset, length);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                writer().flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                writer().close();
+            }
+
+            private Writer writer() {
+                if (writer == null) {
+                    ExportCache.Capture capture = startWriting();
+                    writer = capture != null ? capture.tee(target) : target;
+                }
+                return writer;
+            }
+        };
+    }
+
+    void finished(Throwable failure) {
+        if (capture != null) {
+            try {
+                capture.close();
+            } catch (IOException e) {
+                failure = failure != null ? failure : e;
+            }
+        }
+        this.failure = failure;
+        finished.countDown();
+    }
+
+    //Waits for the export, for at most the timeout unless it is 0, and reads its output; null if it was too large to
+    //be captured.
+    InputStream await(long timeoutMillis) throws InterruptedException, IOException {
+        if (timeoutMillis <= 0) {
+            finished.await();
+        } else if (!finished.await(timeoutMillis, TimeUnit.MILLISECONDS)) {
+            throw new RuntimeException(new TimeoutException("Shared export did not finish within " + timeoutMillis + " ms"));
+        }
+        if (failure != null) {
+            throw new RuntimeException("Shared export failed", failure);
+        }
+        return capture.open();
+    }
+
+    boolean isSuccessful() {
+        return failure == null;
+    }
+
+    private synchronized ExportCache.Capture startWriting() {
+        writing = true;
+        return capture;
+    }
+}
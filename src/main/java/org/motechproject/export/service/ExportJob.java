@@ -0,0 +1,86 @@
+package org.motechproject.export.service;
+
+import org.motechproject.export.metrics.ExportMetrics;
+import org.motechproject.job.BackgroundJob;
+
+import java.io.File;
+
+/**
+ * A report generated in the background by the {@link ExportJobService}. Its progress is read from the metrics of
+ * the export while it runs; once it has completed, the report is in the result file until the job expires.
+ */
+public class ExportJob extends BackgroundJob {
+
+    private final String fileName;
+    private final String contentType;
+    private final File result;
+    private final ExportMetrics exportMetrics;
+
+    ExportJob(String id, String fileName, String contentType, File result, ExportMetrics exportMetrics) {
+        super(id);
+        this.fileName = fileName;
+        this.contentType = contentType;
+        this.result = result;
+        this.exportMetrics = exportMetrics;
+    }
+
+    @Override
+    protected void failed(Throwable failure) {
+        if (exportMetrics.isSuccessful()) {
+            exportMetrics.failed(failure);
+        }
+    }
+
+    //A report that failed part way is not kept.
+    @Override
+    protected void finished(boolean successful) {
+        if (!successful) {
+            result.delete();
+        }
+        super.finished(successful);
+    }
+
+    @Override
+    protected void expired() {
+        result.delete();
+    }
+
+    //The name the report is downloaded as.
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public long getRowsWritten() {
+        return exportMetrics.getRowsWritten();
+    }
+
+    public long getBytesWritten() {
+        return exportMetrics.getBytesWritten();
+    }
+
+    public Throwable getFailure() {
+        return exportMetrics.getFailure();
+    }
+
+    //The generated report, null unless the job has completed.
+    public File getResult() {
+        return getStatus() == Status.COMPLETED ? result : null;
+    }
+
+    ExportMetrics getExportMetrics() {
+        return exportMetrics;
+    }
+
+    File getResultFile() {
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "Export job " + getId() + " for " + fileName;
+    }
+}
@@ -0,0 +1,136 @@
+package org.motechproject.export.service;
+
+import org.motechproject.export.builder.excel.model.ExcelEngine;
+import org.motechproject.export.metrics.CountingOutputStream;
+import org.motechproject.export.metrics.ExportMetrics;
+import org.motechproject.job.BackgroundJobs;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates reports in the background, so that a request for a large report returns a job right away instead of
+ * holding its thread until the report is written. Reports are written by a fixed number of threads, with a bounded
+ * queue of jobs waiting for them; a job submitted while the queue is full is rejected with a
+ * RejectedExecutionException.
+ * <p/>
+ * Reports are spooled to files in the spool directory. Jobs, and their files, are kept for the retention time
+ * after they finish, and are removed as later jobs are submitted or looked up. Jobs are held in memory, so spooled
+ * files older than the retention time are removed on start up.
+ */
+@Service
+public class ExportJobService implements DisposableBean {
+
+    public static final int DEFAULT_THREADS = 2;
+    public static final int DEFAULT_QUEUE_CAPACITY = 20;
+    public static final long DEFAULT_RETENTION_MILLIS = TimeUnit.HOURS.toMillis(1);
+    public static final Charset CSV_CHARSET = Charset.forName("UTF-8");
+
+    private final ExportService exportService;
+    private final File spoolDirectory;
+    private final long retentionMillis;
+    private final ThreadPoolExecutor exporters;
+    private final BackgroundJobs<ExportJob> jobs;
+
+    @Autowired
+    public ExportJobService(ExportService exportService) {
+        this(exportService, new File(System.getProperty("java.io.tmpdir"), "motech-exports"), DEFAULT_THREADS,
+                DEFAULT_QUEUE_CAPACITY, DEFAULT_RETENTION_MILLIS);
+    }
+
+    public ExportJobService(ExportService exportService, File spoolDirectory, int threads, int queueCapacity, long retentionMillis) {
+        this.exportService = exportService;
+        this.spoolDirectory = spoolDirectory;
+        this.retentionMillis = retentionMillis;
+        this.exporters = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), BackgroundJobs.threadFactory("export-job"));
+        this.jobs = new BackgroundJobs<>(retentionMillis);
+        spoolDirectory.mkdirs();
+        deleteExpiredFiles();
+    }
+
+    public ExportJob submitExcel(final String groupName, final String reportName, final ExcelEngine engine) {
+        final ExportJob exportJob = newJob(reportName, engine.extension(), engine.contentType(),
+                new ExportMetrics(groupName, reportName, engine.extension()));
+        return jobs.submit(exportJob, exporters, new Export(exportJob) {
+            @Override
+            void write(ExportMetrics exportMetrics) throws Exception {
+                try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(exportJob.getResultFile()))) {
+                    exportService.exportAsExcel(groupName, reportName, outputStream, engine, exportMetrics);
+                }
+            }
+        });
+    }
+
+    //CSV reports are written in UTF-8.
+    public ExportJob submitCSV(final String dataSourceName, String reportName, final Object parameters) {
+        final ExportJob exportJob = newJob(reportName, "csv", "text/csv;charset=" + CSV_CHARSET.name(),
+                new ExportMetrics(dataSourceName, reportName, "csv"));
+        return jobs.submit(exportJob, exporters, new Export(exportJob) {
+            @Override
+            void write(ExportMetrics exportMetrics) throws Exception {
+                OutputStream outputStream = new CountingOutputStream(new FileOutputStream(exportJob.getResultFile()), exportMetrics);
+                try (Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, CSV_CHARSET))) {
+                    exportService.exportAsCSV(dataSourceName, writer, parameters, exportMetrics);
+                }
+            }
+        });
+    }
+
+    //Returns null for a job that is unknown or has expired.
+    public ExportJob getJob(String id) {
+        return jobs.get(id);
+    }
+
+    @Override
+    public void destroy() {
+        exporters.shutdownNow();
+    }
+
+    private ExportJob newJob(String reportName, String extension, String contentType, ExportMetrics exportMetrics) {
+        String id = UUID.randomUUID().toString();
+        return new ExportJob(id, reportName + "." + extension, contentType, new File(spoolDirectory, id + "." + extension), exportMetrics);
+    }
+
+    private void deleteExpiredFiles() {
+        File[] files = spoolDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        long expiredBefore = System.currentTimeMillis() - retentionMillis;
+        for (File file : files) {
+            if (file.isFile() && file.lastModified() <= expiredBefore) {
+                file.delete();
+            }
+        }
+    }
+
+    private abstract static class Export implements BackgroundJobs.Task {
+        private final ExportMetrics exportMetrics;
+
+        Export(ExportJob exportJob) {
+            this.exportMetrics = exportJob.getExportMetrics();
+        }
+
+        @Override
+        public boolean run() throws Exception {
+            write(exportMetrics);
+            return exportMetrics.isSuccessful();
+        }
+
+        abstract void write(ExportMetrics exportMetrics) throws Exception;
+    }
+}
@@ -1,25 +1,50 @@
 package org.motechproject.export.service;
 
+import org.motechproject.export.builder.excel.model.ExcelEngine;
+import org.motechproject.export.cache.ExportCache;
+import org.motechproject.export.metrics.CountingOutputStream;
+import org.motechproject.export.metrics.ExportMetrics;
+import org.motechproject.export.metrics.ExportMetricsListener;
 import org.motechproject.export.model.AllCSVExportProcessors;
 import org.motechproject.export.model.AllExcelExportProcessors;
 import org.motechproject.export.model.CSVExportProcessor;
 import org.motechproject.export.model.ExcelExportProcessor;
 import org.motechproject.export.writer.CSVWriter;
 import org.motechproject.export.writer.ExcelWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.GZIPOutputStream;
 
 
 @Service
 public class ExportService {
 
+    private static final int GZIP_BUFFER_SIZE = 8192;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
     private AllExcelExportProcessors allExcelExportProcessors;
     private AllCSVExportProcessors allCSVExportProcessors;
     private ExcelWriter excelWriter;
     private CSVWriter csvWriter;
+    private List<ExportMetricsListener> exportMetricsListeners = new ArrayList<>();
+    private ExportCache exportCache = new ExportCache();
+    private final ConcurrentMap<ExportCache.Key, ExportFlight> flights = new ConcurrentHashMap<>();
+    private long shareTimeoutMillis;
 
     @Autowired
     public ExportService(AllExcelExportProcessors allExcelExportProcessors, AllCSVExportProcessors allCSVExportProcessors,
@@ -30,9 +55,62 @@ public class ExportService {
         this.csvWriter = csvWriter;
     }
 
+    @Autowired(required = false)
+    public void setExportMetricsListeners(List<ExportMetricsListener> exportMetricsListeners) {
+        this.exportMetricsListeners = exportMetricsListeners;
+    }
+
+    //Exports of data sources with a cache TTL are written from and into the cache; shared exports are captured by it.
+    @Autowired(required = false)
+    public void setExportCache(ExportCache exportCache) {
+        this.exportCache = exportCache;
+    }
+
+    //How long an export waits for an identical export it shares before it fails; by default, or with 0, it waits until
+    //the shared export has finished, so that identical exports are only ever rendered once.
+    public void setShareTimeoutMillis(long shareTimeoutMillis) {
+        this.shareTimeoutMillis = shareTimeoutMillis;
+    }
+
+    //Generated with the engine of the report, see excelEngine.
     public void exportAsExcel(String groupName, String reportName, OutputStream outputStream) {
+        exportAsExcel(groupName, reportName, outputStream, excelEngine(groupName, reportName));
+    }
+
+    //The engine a report is generated with when none is asked for: its @ExcelReport engine, or the default engine of the ExcelWriter.
+    public ExcelEngine excelEngine(String groupName, String reportName) {
         ExcelExportProcessor excelExportProcessor = allExcelExportProcessors.get(groupName);
-        excelWriter.writeExcelToResponse(outputStream, excelExportProcessor, reportName, reportName + ".xls");
+        ExcelEngine engine = excelExportProcessor != null ? excelExportProcessor.engine(reportName) : null;
+        return engine != null ? engine : excelWriter.getDefaultEngine();
+    }
+
+    public void exportAsExcel(String groupName, String reportName, OutputStream outputStream, ExcelEngine engine) {
+        exportAsExcel(groupName, reportName, outputStream, engine, new ExportMetrics(groupName, reportName, engine.extension()));
+    }
+
+    //Records the export in the given metrics, which can be read while it runs, and publishes them once it is done.
+    public void exportAsExcel(String groupName, final String reportName, final OutputStream outputStream, final ExcelEngine engine,
+                              final ExportMetrics exportMetrics) {
+        final ExcelExportProcessor excelExportProcessor = allExcelExportProcessors.get(groupName);
+        final String fileName = reportName + "." + engine.extension();
+        long cacheMillis = excelExportProcessor != null ? excelExportProcessor.getCacheMillis() : 0;
+        export(new ExportCache.Key(groupName, reportName, engine.extension(), null), cacheMillis, exportMetrics, new Export() {
+            @Override
+            public void render(ExportFlight flight) {
+                excelWriter.writeExcelToResponse(flight != null ? flight.tee(outputStream) : outputStream, excelExportProcessor,
+                        reportName, fileName, engine, exportMetrics);
+            }
+
+            @Override
+            public void copy(InputStream output) throws IOException {
+                byte[] buffer = new byte[8192];
+                for (int read; (read = output.read(buffer)) != -1; ) {
+                    outputStream.write(buffer, 0, read);
+                    exportMetrics.bytesWritten(read);
+                }
+                outputStream.flush();
+            }
+        });
     }
 
     //This method does not support pagination for csv file.
@@ -41,7 +119,163 @@ public class ExportService {
     }
 
     public void exportAsCSV(String dataSourceName, Writer writer, Object parameters) {
-        CSVExportProcessor csvExportProcessor = allCSVExportProcessors.get(dataSourceName);
-        csvWriter.writeCSVData(writer, csvExportProcessor, parameters);
+        exportAsCSV(dataSourceName, writer, parameters, new ExportMetrics(dataSourceName, dataSourceName, "csv"));
+    }
+
+    //Writes the CSV in UTF-8 and gzipped as its rows are produced; the output stream is finished and closed with it.
+    //Its metrics count the gzipped bytes as well as the characters.
+    public void exportAsGzippedCSV(String dataSourceName, OutputStream outputStream, Object parameters) {
+        ExportMetrics exportMetrics = new ExportMetrics(dataSourceName, dataSourceName, "csv");
+        Writer writer;
+        try {
+            OutputStream gzipOutputStream = new GZIPOutputStream(new CountingOutputStream(outputStream, exportMetrics), GZIP_BUFFER_SIZE, true);
+            writer = new OutputStreamWriter(gzipOutputStream, ExportCache.CHARSET);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        exportAsCSV(dataSourceName, writer, parameters, exportMetrics);
+    }
+
+    public void exportAsCSV(String dataSourceName, final Writer writer, final Object parameters, final ExportMetrics exportMetrics) {
+        final CSVExportProcessor csvExportProcessor = allCSVExportProcessors.get(dataSourceName);
+        long cacheMillis = csvExportProcessor != null ? csvExportProcessor.getCacheMillis() : 0;
+        export(new ExportCache.Key(dataSourceName, dataSourceName, "csv", parameters), cacheMillis, exportMetrics, new Export() {
+            @Override
+            public void render(ExportFlight flight) {
+                csvWriter.writeCSVData(flight != null ? flight.tee(writer) : writer, csvExportProcessor, parameters, exportMetrics);
+            }
+
+            //Like the CSVWriter, closes the writer once the CSV is written to it.
+            @Override
+            public void copy(InputStream output) throws IOException {
+                Reader reader = new InputStreamReader(output, ExportCache.CHARSET);
+                char[] buffer = new char[8192];
+                for (int read; (read = reader.read(buffer)) != -1; ) {
+                    writer.write(buffer, 0, read);
+                    exportMetrics.charsWritten(read);
+                }
+                writer.close();
+            }
+        });
+    }
+
+    //Writes the export from the cache, shares an identical export that is running, or renders it.
+    private void export(ExportCache.Key key, long cacheMillis, ExportMetrics exportMetrics, Export export) {
+        try {
+            while (true) {
+                InputStream cached = cacheMillis > 0 ? exportCache.get(key) : null;
+                if (cached != null) {
+                    try (InputStream output = cached) {
+                        export.copy(output);
+                    }
+                    exportMetrics.servedFromCache();
+                    return;
+                }
+
+                ExportFlight flight = flights.get(key);
+                if (flight == null) {
+                    flight = new ExportFlight(exportCache, exportCache.generation(key), cacheMillis > 0);
+                    if (flights.putIfAbsent(key, flight) == null) {
+                        lead(key, flight, cacheMillis, exportMetrics, export);
+                        return;
+                    }
+                } else if (flight.getGeneration() != exportCache.generation(key)) {
+                    //Its data source was invalidated since it started, so it is left to finish without sharing.
+                    flights.remove(key, flight);
+                } else if (flight.join()) {
+                    follow(key, flight, cacheMillis, exportMetrics, export);
+                    return;
+                } else {
+                    //Every request has left it, so its output is in the cache or gone, or its output is not captured.
+                    flights.remove(key, flight);
+                }
+            }
+        } catch (IOException e) {
+            exportMetrics.failed(e);
+            throw new RuntimeException(e);
+        } catch (RuntimeException | Error e) {
+            exportMetrics.failed(e);
+            throw e;
+        } finally {
+            publish(exportMetrics);
+        }
+    }
+
+    private void lead(ExportCache.Key key, ExportFlight flight, long cacheMillis, ExportMetrics exportMetrics, Export export) {
+        Throwable failure = null;
+        try {
+            export.render(flight);
+            failure = exportMetrics.getFailure();
+        } catch (RuntimeException | Error e) {
+            failure = e;
+            throw e;
+        } finally {
+            flight.finished(failure);
+            leave(key, flight, cacheMillis);
+        }
+        //The export is shared and cached even if it could not be written to this request.
+        ExportCache.Capture capture = flight.getCapture();
+        if (capture != null && capture.getTargetFailure() != null) {
+            throw new RuntimeException(capture.getTargetFailure());
+        }
+    }
+
+    private void follow(ExportCache.Key key, ExportFlight flight, long cacheMillis, ExportMetrics exportMetrics, Export export) throws IOException {
+        try {
+            InputStream shared = flight.await(shareTimeoutMillis);
+            if (shared == null) {
+                //Too large to be shared.
+                export.render(null);
+                return;
+            }
+            try (InputStream output = shared) {
+                export.copy(output);
+            }
+            exportMetrics.shared();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            leave(key, flight, cacheMillis);
+        }
+    }
+
+    //The last request to leave the flight caches its output if it succeeded, and discards it otherwise.
+    private void leave(ExportCache.Key key, ExportFlight flight, long cacheMillis) {
+        if (!flight.leave()) {
+            return;
+        }
+        ExportCache.Capture capture = flight.getCapture();
+        try {
+            if (capture != null && cacheMillis > 0 && flight.isSuccessful()) {
+                exportCache.put(key, capture, cacheMillis, flight.getGeneration());
+            }
+        } catch (IOException e) {
+            logger.error("Could not cache the export of " + key + ": " + e.getMessage());
+        } finally {
+            if (capture != null) {
+                capture.discard();
+            }
+            flights.remove(key, flight);
+        }
+    }
+
+    private void publish(ExportMetrics exportMetrics) {
+        exportMetrics.completed();
+        for (ExportMetricsListener exportMetricsListener : exportMetricsListeners) {
+            try {
+                exportMetricsListener.exportCompleted(exportMetrics);
+            } catch (RuntimeException e) {
+                logger.error("Export metrics listener failed for " + exportMetrics.getReportName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private interface Export {
+        //Renders the export, through the flight unless it is null.
+        void render(ExportFlight flight);
+
+        //Writes output rendered by another request, or taken from the cache.
+        void copy(InputStream output) throws IOException;
     }
 }
@@ -1,12 +1,14 @@
 package org.motechproject.export.writer;
 
+import org.motechproject.export.metrics.CountingWriter;
+import org.motechproject.export.metrics.ExportMetrics;
 import org.motechproject.export.model.CSVExportProcessor;
-import org.motechproject.export.model.ExportData;
+import org.motechproject.export.model.ExportDataModel;
+import org.motechproject.export.model.ExportRowHandler;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 import java.io.Writer;
-import java.util.ArrayList;
 import java.util.List;
 
 import static au.com.bytecode.opencsv.CSVWriter.DEFAULT_SEPARATOR;
@@ -17,30 +19,58 @@ public class CSVWriter {
 
     public void writeCSVData(Writer writer, CSVExportProcessor csvExportProcessor, Object parameters) {
         try {
-            ExportData exportData = csvExportProcessor.getCSVData(parameters);
-            writeDataToCSV(writer, exportData);
+            CSVRowHandler rowHandler = new CSVRowHandler(writer);
+            csvExportProcessor.streamCSVData(parameters, rowHandler);
+            rowHandler.close();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
-    public void writeCSVFromData(Writer writer, List data) throws IOException {
-        ExportData exportData = new CSVExportProcessor().formatCSVData(data);
-        writeDataToCSV(writer, exportData);
+    public void writeCSVData(Writer writer, CSVExportProcessor csvExportProcessor, Object parameters, ExportMetrics exportMetrics) {
+        try {
+            CSVRowHandler rowHandler = new CSVRowHandler(new CountingWriter(writer, exportMetrics));
+            csvExportProcessor.streamCSVData(parameters, rowHandler, exportMetrics);
+            long start = System.nanoTime();
+            rowHandler.close();
+            exportMetrics.written(System.nanoTime() - start);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
     }
 
-    private void writeDataToCSV(Writer writer, ExportData exportData) throws IOException {
-        au.com.bytecode.opencsv.CSVWriter csvWriter = new au.com.bytecode.opencsv.CSVWriter(writer, DEFAULT_SEPARATOR, NO_QUOTE_CHARACTER);
-        csvWriter.writeNext(exportData.getColumnHeaders().toArray(new String[]{}));
-        csvWriter.writeAll(getData(exportData.getAllRowData()));
-        csvWriter.close();
+    public void writeCSVFromData(Writer writer, List data) throws IOException {
+        CSVRowHandler rowHandler = new CSVRowHandler(writer);
+        new CSVExportProcessor().formatCSVData(data, rowHandler);
+        rowHandler.close();
     }
 
-    private List<String[]> getData(List<List<String>> allRowData) {
-        List<String[]> rows = new ArrayList<String[]>();
-        for (List<String> row : allRowData) {
-            rows.add(row.toArray(new String[]{}));
+    private static class CSVRowHandler implements ExportRowHandler {
+
+        private final au.com.bytecode.opencsv.CSVWriter csvWriter;
+
+        private CSVRowHandler(Writer writer) {
+            csvWriter = new au.com.bytecode.opencsv.CSVWriter(writer, DEFAULT_SEPARATOR, NO_QUOTE_CHARACTER);
+        }
+
+        @Override
+        public void columnHeaders(List<String> columnHeaders) {
+            csvWriter.writeNext(columnHeaders.toArray(new String[columnHeaders.size()]));
+            try {
+                csvWriter.flush();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public void row(List<?> rowValues) {
+            List<String> rowData = ExportDataModel.rowText(rowValues);
+            csvWriter.writeNext(rowData.toArray(new String[rowData.size()]));
+        }
+
+        private void close() throws IOException {
+            csvWriter.close();
         }
-        return rows;
     }
 }
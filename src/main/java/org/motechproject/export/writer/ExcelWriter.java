@@ -1,7 +1,10 @@
 package org.motechproject.export.writer;
 
-import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.motechproject.export.builder.excel.PagedExcelBuilder;
+import org.motechproject.export.builder.excel.model.ExcelEngine;
+import org.motechproject.export.builder.excel.model.Workbook;
+import org.motechproject.export.metrics.CountingOutputStream;
+import org.motechproject.export.metrics.ExportMetrics;
 import org.motechproject.export.model.ExcelExportProcessor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,22 +18,51 @@ public class ExcelWriter {
 
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
+    private ExcelEngine defaultEngine = ExcelEngine.HSSF;
+
     public void writeExcelToResponse(OutputStream outputStream, ExcelExportProcessor excelExportProcessor, String reportName, String fileName) {
+        writeExcelToResponse(outputStream, excelExportProcessor, reportName, fileName, defaultEngine);
+    }
+
+    public void writeExcelToResponse(OutputStream outputStream, ExcelExportProcessor excelExportProcessor, String reportName, String fileName, ExcelEngine engine) {
+        writeExcelToResponse(outputStream, excelExportProcessor, reportName, fileName, engine, null);
+    }
+
+    public void writeExcelToResponse(OutputStream outputStream, ExcelExportProcessor excelExportProcessor, String reportName, String fileName,
+                                     ExcelEngine engine, ExportMetrics exportMetrics) {
+        Workbook excelWorkbook = createExcelWorkBook(excelExportProcessor, reportName, engine, exportMetrics);
         try {
-            HSSFWorkbook excelWorkbook = createExcelWorkBook(excelExportProcessor, reportName);
+            long start = System.nanoTime();
             if (null != excelWorkbook)
-                excelWorkbook.write(outputStream);
+                excelWorkbook.write(exportMetrics != null ? new CountingOutputStream(outputStream, exportMetrics) : outputStream);
             outputStream.flush();
+            if (exportMetrics != null)
+                exportMetrics.written(System.nanoTime() - start);
         } catch (IOException e) {
             logger.error("Error while writing excel report to response: " + e.getMessage());
+            if (exportMetrics != null)
+                exportMetrics.failed(e);
+        } finally {
+            if (null != excelWorkbook)
+                excelWorkbook.dispose();
         }
     }
 
-    private HSSFWorkbook createExcelWorkBook(ExcelExportProcessor excelExportProcessor, String reportName) {
+    public ExcelEngine getDefaultEngine() {
+        return defaultEngine;
+    }
+
+    public void setDefaultEngine(ExcelEngine defaultEngine) {
+        this.defaultEngine = defaultEngine;
+    }
+
+    private Workbook createExcelWorkBook(ExcelExportProcessor excelExportProcessor, String reportName, ExcelEngine engine, ExportMetrics exportMetrics) {
         try {
-            return new PagedExcelBuilder(excelExportProcessor, reportName).build();
+            return new PagedExcelBuilder(excelExportProcessor, reportName, engine, exportMetrics).buildWorkbook();
         } catch (Exception e) {
             logger.error("Error while generating excel report: " + e.getMessage());
+            if (exportMetrics != null)
+                exportMetrics.failed(e);
             return null;
         }
     }
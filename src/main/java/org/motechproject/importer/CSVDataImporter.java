@@ -27,12 +27,16 @@ public class CSVDataImporter {
     }
 
     public CSVImportResponse importData(String entity, Boolean shouldUpdateValidRecords, String... filePaths) {
+        return allCSVDataImportProcessor.get(entity).process(shouldUpdateValidRecords, absoluteFilePaths(filePaths));
+    }
+
+    //Files are looked up on the classpath first.
+    static String[] absoluteFilePaths(String... filePaths) {
         String[] absoluteFilePaths = new String[filePaths.length];
         for (int i = 0; i < absoluteFilePaths.length; ++i) {
             URL resource = CSVDataImporter.class.getClassLoader().getResource(filePaths[i]);
             absoluteFilePaths[i] = resource == null ? filePaths[i] : resource.getPath();
         }
-
-        return allCSVDataImportProcessor.get(entity).process(shouldUpdateValidRecords, absoluteFilePaths);
+        return absoluteFilePaths;
     }
 }
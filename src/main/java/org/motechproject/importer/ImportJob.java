@@ -0,0 +1,69 @@
+package org.motechproject.importer;
+
+import org.motechproject.importer.domain.CSVImportResponse;
+import org.motechproject.importer.domain.ImportProgress;
+import org.motechproject.job.BackgroundJob;
+
+/**
+ * An import run in the background by the {@link ImportJobService}. Its progress counts rows while the import runs.
+ * A job completes when every row was imported, and fails when the import was invalid or could not be run; the
+ * import response or the errors of the content then tell why.
+ */
+public class ImportJob extends BackgroundJob {
+
+    private final String entity;
+    private final ImportProgress progress = new ImportProgress();
+    private volatile CSVImportResponse importResponse;
+    private volatile String errors;
+    private volatile Throwable failure;
+
+    ImportJob(String id, String entity) {
+        super(id);
+        this.entity = entity;
+    }
+
+    //Returns whether every row was imported.
+    boolean imported(CSVImportResponse importResponse) {
+        this.importResponse = importResponse;
+        return importResponse.isImportSuccessful();
+    }
+
+    //Returns whether the content was valid.
+    boolean imported(String errors) {
+        this.errors = errors;
+        return errors == null;
+    }
+
+    @Override
+    protected void failed(Throwable failure) {
+        this.failure = failure;
+    }
+
+    public String getEntity() {
+        return entity;
+    }
+
+    public ImportProgress getProgress() {
+        return progress;
+    }
+
+    //The response of an import of files, once it has finished.
+    public CSVImportResponse getImportResponse() {
+        return importResponse;
+    }
+
+    //The errors of an import of content that was invalid, as processContent returns them.
+    public String getErrors() {
+        return errors;
+    }
+
+    //What stopped the import from running, if anything did.
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    @Override
+    public String toString() {
+        return "Import job " + getId() + " for " + entity;
+    }
+}
@@ -0,0 +1,107 @@
+package org.motechproject.importer;
+
+import org.motechproject.importer.model.AllCSVDataImportProcessor;
+import org.motechproject.importer.model.CSVDataImportProcessor;
+import org.motechproject.job.BackgroundJobs;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs CSV imports in the background, so that the caller gets a job to follow instead of waiting for the import.
+ * Each entity has its own executor, with a fixed number of threads and a bounded queue of jobs waiting for them, so
+ * that a burst of uploads for one entity is imported a few at a time and does not hold back the other entities.
+ * A job submitted while the queue of its entity is full is rejected with a RejectedExecutionException.
+ * <p/>
+ * Finished jobs are kept for the retention time, and removed as later jobs are submitted or looked up.
+ */
+@Component
+public class ImportJobService implements DisposableBean {
+
+    public static final int DEFAULT_THREADS_PER_ENTITY = 1;
+    public static final int DEFAULT_QUEUE_CAPACITY = 10;
+    public static final long DEFAULT_RETENTION_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private static final long IDLE_THREAD_SECONDS = 60;
+
+    private final AllCSVDataImportProcessor allCSVDataImportProcessor;
+    private final int threadsPerEntity;
+    private final int queueCapacity;
+    private final Map<String, ThreadPoolExecutor> importers = new HashMap<>();
+    private final BackgroundJobs<ImportJob> jobs;
+
+    @Autowired
+    public ImportJobService(AllCSVDataImportProcessor allCSVDataImportProcessor) {
+        this(allCSVDataImportProcessor, DEFAULT_THREADS_PER_ENTITY, DEFAULT_QUEUE_CAPACITY, DEFAULT_RETENTION_MILLIS);
+    }
+
+    public ImportJobService(AllCSVDataImportProcessor allCSVDataImportProcessor, int threadsPerEntity, int queueCapacity, long retentionMillis) {
+        this.allCSVDataImportProcessor = allCSVDataImportProcessor;
+        this.threadsPerEntity = threadsPerEntity;
+        this.queueCapacity = queueCapacity;
+        this.jobs = new BackgroundJobs<>(retentionMillis);
+    }
+
+    //Files are looked up on the classpath first, as CSVDataImporter does.
+    public ImportJob submit(String entity, final Boolean shouldUpdateValidRecords, String... filePaths) {
+        final CSVDataImportProcessor processor = processor(entity);
+        final String[] absoluteFilePaths = CSVDataImporter.absoluteFilePaths(filePaths);
+        final ImportJob importJob = new ImportJob(UUID.randomUUID().toString(), entity);
+        return jobs.submit(importJob, importer(entity), new BackgroundJobs.Task() {
+            @Override
+            public boolean run() {
+                return importJob.imported(processor.process(shouldUpdateValidRecords, importJob.getProgress(), absoluteFilePaths));
+            }
+        });
+    }
+
+    public ImportJob submitContent(String entity, final String content, final Boolean shouldUpdateValidRecords) {
+        final CSVDataImportProcessor processor = processor(entity);
+        final ImportJob importJob = new ImportJob(UUID.randomUUID().toString(), entity);
+        return jobs.submit(importJob, importer(entity), new BackgroundJobs.Task() {
+            @Override
+            public boolean run() throws Exception {
+                return importJob.imported(processor.processContent(content, shouldUpdateValidRecords, importJob.getProgress()));
+            }
+        });
+    }
+
+    //Returns null for a job that is unknown or has expired.
+    public ImportJob getJob(String id) {
+        return jobs.get(id);
+    }
+
+    @Override
+    public synchronized void destroy() {
+        for (ThreadPoolExecutor importer : importers.values()) {
+            importer.shutdownNow();
+        }
+    }
+
+    private CSVDataImportProcessor processor(String entity) {
+        CSVDataImportProcessor processor = allCSVDataImportProcessor.get(entity);
+        if (processor == null) {
+            throw new IllegalArgumentException("No CSV importer for " + entity);
+        }
+        return processor;
+    }
+
+    private synchronized ThreadPoolExecutor importer(String entity) {
+        ThreadPoolExecutor importer = importers.get(entity);
+        if (importer == null) {
+            importer = new ThreadPoolExecutor(threadsPerEntity, threadsPerEntity, IDLE_THREAD_SECONDS, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<Runnable>(queueCapacity), BackgroundJobs.threadFactory("import-job-" + entity));
+            //Entities are imported now and then, so their threads are not kept once they are idle.
+            importer.allowCoreThreadTimeOut(true);
+            importers.put(entity, importer);
+        }
+        return importer;
+    }
+}
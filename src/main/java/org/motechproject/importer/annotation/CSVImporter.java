@@ -10,4 +10,36 @@ import java.lang.annotation.Target;
 public @interface CSVImporter {
     String entity();
     Class bean();
+
+    /**
+     * Number of records read, validated and posted at a time. 0 reads the whole file before validating it.
+     * When a chunk is invalid, the chunks before it have already been posted.
+     */
+    int chunkSize() default 0;
+
+    /**
+     * Number of files of one import processed at the same time. 1 processes them in the given order and stops at
+     * the first file that fails. With more, every file is processed and its errors are written next to it to
+     * &lt;file name&gt;-errors.csv. The validate and post methods of the importer are then called concurrently.
+     */
+    int fileConcurrency() default 1;
+
+    /**
+     * SimpleDateFormat pattern of the java.util.Date properties of the bean. A blank date column leaves the property null.
+     */
+    String dateFormat() default "yyyy-MM-dd";
+
+    /**
+     * Checkpoints the import of each file to &lt;file&gt;.checkpoint after every posted chunk, so that importing the
+     * same files again resumes where the last import stopped instead of posting every record again. Needs a
+     * chunkSize. The checkpoints are deleted once all files are imported.
+     */
+    boolean checkpoint() default false;
+
+    /**
+     * Number of chunks that may wait between two stages of a pipelined import. With more than 0, chunks are read,
+     * bound, validated and posted by separate stages that overlap, so the validate method of the importer is called
+     * on another thread than the post method, for a later chunk. Needs a chunkSize. 0 does one stage at a time.
+     */
+    int pipelineDepth() default 0;
 }
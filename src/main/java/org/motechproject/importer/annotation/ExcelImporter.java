@@ -11,4 +11,19 @@ public @interface ExcelImporter {
     String entity();
 
     Class bean();
+
+    /**
+     * Number of rows read, validated and posted at a time. 0 reads the whole sheet before validating it.
+     */
+    int chunkSize() default 0;
+
+    /**
+     * SimpleDateFormat pattern of the java.util.Date properties of the bean. Date cells are read in this format.
+     */
+    String dateFormat() default "yyyy-MM-dd";
+
+    /**
+     * Number of chunks that may wait between two stages of a pipelined import, as in {@link CSVImporter#pipelineDepth()}.
+     */
+    int pipelineDepth() default 0;
 }
@@ -9,4 +9,12 @@ import java.lang.annotation.Target;
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.METHOD)
 public @interface Validate {
+
+    /**
+     * Declares that the validate method can be called concurrently. Records are then validated in batches of
+     * batchSize on a shared worker pool, and the responses are merged back in file order.
+     */
+    boolean threadSafe() default false;
+
+    int batchSize() default 1000;
 }
@@ -1,12 +1,21 @@
 package org.motechproject.importer.domain;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class CSVImportResponse {
     String lastProcessedFileName;
     boolean isImportSuccessful;
+    List<FileImportResult> fileImportResults;
 
     public CSVImportResponse(String lastProcessedFileName, boolean importSuccessful) {
+        this(lastProcessedFileName, importSuccessful, new ArrayList<FileImportResult>());
+    }
+
+    public CSVImportResponse(String lastProcessedFileName, boolean importSuccessful, List<FileImportResult> fileImportResults) {
         this.lastProcessedFileName = lastProcessedFileName;
         isImportSuccessful = importSuccessful;
+        this.fileImportResults = fileImportResults;
     }
 
     public String getLastProcessedFileName() {
@@ -16,4 +25,9 @@ public class CSVImportResponse {
     public boolean isImportSuccessful() {
         return isImportSuccessful;
     }
+
+    //One result per file that was imported or failed, in the order the files were given.
+    public List<FileImportResult> getFileImportResults() {
+        return fileImportResults;
+    }
 }
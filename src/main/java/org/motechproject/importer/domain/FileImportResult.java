@@ -0,0 +1,27 @@
+package org.motechproject.importer.domain;
+
+import java.util.List;
+
+public class FileImportResult {
+    private String fileName;
+    private boolean isImportSuccessful;
+    private List<Error> errors;
+
+    public FileImportResult(String fileName, boolean importSuccessful, List<Error> errors) {
+        this.fileName = fileName;
+        isImportSuccessful = importSuccessful;
+        this.errors = errors;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public boolean isImportSuccessful() {
+        return isImportSuccessful;
+    }
+
+    public List<Error> getErrors() {
+        return errors;
+    }
+}
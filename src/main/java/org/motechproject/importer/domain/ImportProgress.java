@@ -0,0 +1,49 @@
+package org.motechproject.importer.domain;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the rows of an import as they are parsed, validated and posted, and the validation errors found so far.
+ * It is updated by the threads of the import and can be read by any thread while the import runs.
+ */
+public class ImportProgress {
+    private final AtomicLong rowsParsed = new AtomicLong();
+    private final AtomicLong rowsValidated = new AtomicLong();
+    private final AtomicLong rowsPosted = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    public void parsed(int rows) {
+        rowsParsed.addAndGet(rows);
+    }
+
+    public void validated(int rows, int errors) {
+        rowsValidated.addAndGet(rows);
+        this.errors.addAndGet(errors);
+    }
+
+    public void posted(int rows) {
+        rowsPosted.addAndGet(rows);
+    }
+
+    public long getRowsParsed() {
+        return rowsParsed.get();
+    }
+
+    public long getRowsValidated() {
+        return rowsValidated.get();
+    }
+
+    public long getRowsPosted() {
+        return rowsPosted.get();
+    }
+
+    public long getErrorCount() {
+        return errors.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d rows parsed, %d validated, %d posted, %d errors", getRowsParsed(), getRowsValidated(),
+                getRowsPosted(), getErrorCount());
+    }
+}
@@ -1,17 +1,23 @@
 package org.motechproject.importer.domain;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
 public class ValidationResponse {
     private boolean isValid;
     private List<Error> errors;
     private List<Object> invalidRecords;
+    private BitSet invalidRows;
 
     public ValidationResponse(boolean valid) {
         isValid = valid;
         errors = new ArrayList<>();
         invalidRecords = new ArrayList<>();
+        invalidRows = new BitSet();
     }
 
     public void addError(Error error) {
@@ -26,6 +32,45 @@ public class ValidationResponse {
         this.invalidRecords.add(invalidRecord);
     }
 
+    //Marks a record by its position in the list that was validated.
+    public void addInvalidRow(int rowIndex) {
+        invalidRows.set(rowIndex);
+    }
+
+    //Marks the rows of the records added through addInvalidRecord, matching them by identity rather than equals.
+    public void indexInvalidRecords(List<?> records) {
+        if (invalidRecords.isEmpty()) {
+            return;
+        }
+        Set<Object> invalid = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>(invalidRecords.size()));
+        invalid.addAll(invalidRecords);
+        for (int i = 0; i < records.size(); i++) {
+            if (invalid.contains(records.get(i))) {
+                invalidRows.set(i);
+            }
+        }
+    }
+
+    //The records at rows not marked invalid, in their original order.
+    public List<Object> validRecords(List<?> records) {
+        List<Object> validRecords = new ArrayList<>(Math.max(0, records.size() - invalidRows.cardinality()));
+        for (int i = invalidRows.nextClearBit(0); i < records.size(); i = invalidRows.nextClearBit(i + 1)) {
+            validRecords.add(records.get(i));
+        }
+        return validRecords;
+    }
+
+    //Adds the outcome of validating the records that start at rowOffset.
+    public void merge(ValidationResponse validationResponse, int rowOffset) {
+        isValid &= validationResponse.isValid();
+        errors.addAll(validationResponse.getErrors());
+        invalidRecords.addAll(validationResponse.getInvalidRecords());
+        BitSet rows = validationResponse.invalidRows;
+        for (int i = rows.nextSetBit(0); i >= 0; i = rows.nextSetBit(i + 1)) {
+            invalidRows.set(rowOffset + i);
+        }
+    }
+
     public List<Error> getErrors() {
         return errors;
     }
@@ -34,8 +79,15 @@ public class ValidationResponse {
         return invalidRecords;
     }
 
+    public BitSet getInvalidRows() {
+        return (BitSet) invalidRows.clone();
+    }
+
+    public boolean isInvalidRow(int rowIndex) {
+        return invalidRows.get(rowIndex);
+    }
+
     public boolean isValid() {
         return isValid;
     }
 }
-
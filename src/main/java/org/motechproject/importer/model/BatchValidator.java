@@ -0,0 +1,75 @@
+package org.motechproject.importer.model;
+
+import org.motechproject.importer.domain.ValidationResponse;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Validates records in batches on a pool bounded by the number of processors, for importers whose validate method
+ * is thread safe. Row indexes and invalid records of each batch are merged relative to the whole list.
+ */
+class BatchValidator {
+
+    private static final ExecutorService validationPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "import-validation-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final Object importer;
+    private final Method validateMethod;
+    private final int batchSize;
+
+    BatchValidator(Object importer, Method validateMethod, int batchSize) {
+        this.importer = importer;
+        this.validateMethod = validateMethod;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    ValidationResponse validate(List<Object> records) throws Exception {
+        if (records == null || records.size() <= batchSize) {
+            return (ValidationResponse) validateMethod.invoke(importer, records);
+        }
+
+        List<Future<ValidationResponse>> batches = new ArrayList<>();
+        for (int from = 0; from < records.size(); from += batchSize) {
+            final List<Object> batch = records.subList(from, Math.min(from + batchSize, records.size()));
+            batches.add(validationPool.submit(new Callable<ValidationResponse>() {
+                @Override
+                public ValidationResponse call() throws Exception {
+                    return (ValidationResponse) validateMethod.invoke(importer, batch);
+                }
+            }));
+        }
+
+        ValidationResponse validationResponse = new ValidationResponse(true);
+        try {
+            for (int i = 0; i < batches.size(); i++) {
+                validationResponse.merge(batches.get(i).get(), i * batchSize);
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw (Exception) e.getCause();
+        } finally {
+            for (Future<ValidationResponse> batch : batches) {
+                batch.cancel(true);
+            }
+        }
+        return validationResponse;
+    }
+}
@@ -0,0 +1,94 @@
+package org.motechproject.importer.model;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+//Reads beans from the records of an import file a chunk at a time, skipping blank records.
+class BeanReader implements RecordChunkReader {
+
+    private final RecordReader recordReader;
+    private final String format;
+    private final CsvRecord record = new CsvRecord();
+    private final RecordBinder binder;
+    private final int chunkSize;
+
+    BeanReader(Reader reader, ColumnBinding columnBinding, int chunkSize) {
+        this(new CsvTokenizer(reader), "CSV", columnBinding, chunkSize);
+    }
+
+    BeanReader(RecordReader recordReader, String format, ColumnBinding columnBinding, int chunkSize) {
+        this(recordReader, null, format, columnBinding, chunkSize);
+    }
+
+    //Reads records after the given header, or reads the header first when there is none.
+    BeanReader(RecordReader recordReader, String[] header, String format, ColumnBinding columnBinding, int chunkSize) {
+        this.recordReader = recordReader;
+        this.format = format;
+        this.chunkSize = chunkSize;
+        try {
+            if (header == null) {
+                header = recordReader.next(record) ? record.toArray() : new String[0];
+            }
+            binder = columnBinding.binder(header);
+        } catch (Exception e) {
+            try {
+                recordReader.close();
+            } catch (IOException ignored) {
+            }
+            throw new RuntimeException("Error parsing " + format + "!", e);
+        }
+    }
+
+    @Override
+    public List<Object> nextChunk() {
+        try {
+            List<Object> beans = new ArrayList<>();
+            boolean hasNext = true;
+            while (beans.size() < chunkSize && (hasNext = recordReader.next(record))) {
+                if (!record.isBlank()) {
+                    beans.add(binder.bind(record));
+                }
+            }
+            return beans.isEmpty() && !hasNext ? null : beans;
+        } catch (Exception e) {
+            throw new RuntimeException("Error parsing " + format + "!", e);
+        }
+    }
+
+    @Override
+    public List<CsvRecord> nextRecords() {
+        try {
+            List<CsvRecord> records = new ArrayList<>();
+            boolean hasNext = true;
+            while (records.size() < chunkSize && (hasNext = recordReader.next(record))) {
+                if (!record.isBlank()) {
+                    records.add(record.copy());
+                }
+            }
+            return records.isEmpty() && !hasNext ? null : records;
+        } catch (Exception e) {
+            throw new RuntimeException("Error parsing " + format + "!", e);
+        }
+    }
+
+    //The binder is not thread safe, so the records of one reader are bound on one thread at a time.
+    @Override
+    public List<Object> bind(List<CsvRecord> records) {
+        try {
+            List<Object> beans = new ArrayList<>(records.size());
+            for (CsvRecord record : records) {
+                beans.add(binder.bind(record));
+            }
+            return beans;
+        } catch (Exception e) {
+            throw new RuntimeException("Error parsing " + format + "!", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        recordReader.close();
+    }
+}
@@ -0,0 +1,44 @@
+package org.motechproject.importer.model;
+
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+
+/**
+ * Counts the bytes that decoded characters took in their charset, so that a position in the characters of a file
+ * can be turned back into a byte offset. UTF-8 and fixed-width charsets are counted directly and exactly, for input
+ * that decoded without malformed bytes. Other charsets are re-encoded, which is exact for stateless encodings.
+ */
+class ByteCounter {
+
+    private final Charset charset;
+    private final boolean utf8;
+    private final int bytesPerChar;
+
+    ByteCounter(Charset charset) {
+        this.charset = charset;
+        this.utf8 = "UTF-8".equals(charset.name());
+        float maxBytesPerChar = charset.newEncoder().maxBytesPerChar();
+        this.bytesPerChar = maxBytesPerChar == charset.newEncoder().averageBytesPerChar() ? (int) maxBytesPerChar : 0;
+    }
+
+    long length(char[] chars, int from, int to) {
+        if (utf8) {
+            long length = 0;
+            for (int i = from; i < to; i++) {
+                char c = chars[i];
+                //Each half of a surrogate pair counts for half of its four bytes, so pairs split across calls add up.
+                length += c < 0x80 ? 1 : c < 0x800 || Character.isSurrogate(c) ? 2 : 3;
+            }
+            return length;
+        }
+        if (bytesPerChar > 0) {
+            return (long) (to - from) * bytesPerChar;
+        }
+        try {
+            return charset.newEncoder().encode(CharBuffer.wrap(chars, from, to - from)).remaining();
+        } catch (CharacterCodingException e) {
+            throw new IllegalStateException("Could not count the bytes of the " + charset + " input", e);
+        }
+    }
+}
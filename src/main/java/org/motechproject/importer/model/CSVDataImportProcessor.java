@@ -1,87 +1,123 @@
 package org.motechproject.importer.model;
 
-import au.com.bytecode.opencsv.CSVReader;
-import au.com.bytecode.opencsv.bean.HeaderColumnNameTranslateMappingStrategy;
 import org.motechproject.importer.annotation.CSVImporter;
-import org.motechproject.importer.annotation.ColumnName;
+import org.motechproject.importer.domain.ImportProgress;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.Reader;
-import java.lang.reflect.Field;
-import java.lang.reflect.Member;
-import java.lang.reflect.Method;
+import java.io.StringReader;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-
-import static java.util.Arrays.asList;
 
 public class CSVDataImportProcessor extends DataImportProcessor {
 
-    private MyCsvToBean csvToBean;
+    private ColumnBinding columnBinding;
     private Object importer;
 
     public CSVDataImportProcessor(Object importer) {
         super(importer, importer.getClass().getAnnotation(CSVImporter.class).bean());
         this.importer = importer;
-        this.csvToBean = new MyCsvToBean();
+        this.columnBinding = new ColumnBinding(bean, getColumnMapping(), importer.getClass().getAnnotation(CSVImporter.class).dateFormat());
+        setChunkSize(importer.getClass().getAnnotation(CSVImporter.class).chunkSize());
+        setFileConcurrency(importer.getClass().getAnnotation(CSVImporter.class).fileConcurrency());
+        setCheckpointing(importer.getClass().getAnnotation(CSVImporter.class).checkpoint());
+        setPipelineDepth(importer.getClass().getAnnotation(CSVImporter.class).pipelineDepth());
     }
 
     public CSVDataImportProcessor(Class bean) {
         super(bean);
-        this.csvToBean = new MyCsvToBean();
+        this.columnBinding = new ColumnBinding(bean, getColumnMapping());
     }
 
     public String entity() {
         return importer.getClass().getAnnotation(CSVImporter.class).entity();
     }
 
+    public String processContent(String content, Boolean shouldUpdateValidRecords) throws Exception {
+        return processContent(content, shouldUpdateValidRecords, new ImportProgress());
+    }
+
+    public String processContent(String content, Boolean shouldUpdateValidRecords, ImportProgress progress) throws Exception {
+        return processContent(chunkReader(new StringReader(content), getChunkSize() > 0 ? getChunkSize() : Integer.MAX_VALUE),
+                shouldUpdateValidRecords, progress);
+    }
+
+    public String processValidate(String content) throws Exception {
+        return processValidate(parse(new StringReader(content)));
+    }
+
+    public String download(String content) throws Exception {
+        return download(parse(new StringReader(content)));
+    }
+
+    public String processPersist(String content) throws Exception {
+        return processPersist(parse(new StringReader(content)));
+    }
+
+    //The column binding is shared; the record binder of a BeanReader belongs to one parse.
     public List<Object> parse(Reader reader) {
-        HeaderColumnNameTranslateMappingStrategy columnNameMappingStrategy = new HeaderColumnNameTranslateMappingStrategy();
-        columnNameMappingStrategy.setType(bean);
-        columnNameMappingStrategy.setColumnMapping(getColumnMapping());
-        return csvToBean.parse(columnNameMappingStrategy, new CSVReader(reader, ','));
+        List<Object> beans = new BeanReader(reader, columnBinding, Integer.MAX_VALUE).nextChunk();
+        return beans != null ? beans : new ArrayList<Object>();
     }
 
-    public static boolean isValid(Class beanClass) {
-        return beanClass.isAnnotationPresent(CSVImporter.class);
+    //Streams are decoded with the default charset, as FileReader decodes import files.
+    @Override
+    public List<Object> parse(InputStream input) {
+        return parse(new InputStreamReader(input, Charset.defaultCharset()));
+    }
+
+    @Override
+    protected ChunkReader chunkReader(InputStream input, int chunkSize) {
+        return chunkReader(new InputStreamReader(input, Charset.defaultCharset()), chunkSize);
+    }
+
+    private ChunkReader chunkReader(Reader reader, int chunkSize) {
+        return new BeanReader(reader, columnBinding, chunkSize);
+    }
+
+    @Override
+    protected boolean supportsCheckpoints() {
+        return true;
     }
 
-    private Map<String, String> getColumnMapping() {
-        Map<String, String> mapping = new HashMap<String, String>();
-        List<Member> members = getAllMembers();
-        for (Member member : members) {
-            if (member instanceof Field) {
-                addFieldDescription(mapping, (Field) member);
-            } else if (member instanceof Method) {
-                addMethodDescription(mapping, (Method) member);
+    //Files are decoded with the default charset, as FileReader decodes them, so that byte offsets match the file.
+    @Override
+    protected ResumableChunkReader resumableChunkReader(File file, int chunkSize, long byteOffset) throws IOException {
+        Charset charset = Charset.defaultCharset();
+        String[] header = null;
+        if (byteOffset > 0) {
+            try (CsvTokenizer headerTokenizer = new CsvTokenizer(new InputStreamReader(new FileInputStream(file), charset))) {
+                CsvRecord record = new CsvRecord();
+                header = headerTokenizer.next(record) ? record.toArray() : new String[0];
             }
         }
-        return mapping;
+
+        FileInputStream input = new FileInputStream(file);
+        input.getChannel().position(byteOffset);
+        CsvTokenizer tokenizer = new CsvTokenizer(new InputStreamReader(input, charset), charset, byteOffset);
+        return new ResumableBeanReader(tokenizer, header, columnBinding, chunkSize);
     }
 
-    private void addMethodDescription(Map<String, String> mapping, Method member) {
-        Method method = member;
-        if (method.isAnnotationPresent(ColumnName.class)) {
-            mapping.put(method.getAnnotation(ColumnName.class).name(), method.getName().replace("set", ""));
-        } else {
-            mapping.put(method.getName(), method.getName().replace("set", ""));
+    private static class ResumableBeanReader extends BeanReader implements ResumableChunkReader {
+        private final CsvTokenizer tokenizer;
+
+        ResumableBeanReader(CsvTokenizer tokenizer, String[] header, ColumnBinding columnBinding, int chunkSize) {
+            super(tokenizer, header, "CSV", columnBinding, chunkSize);
+            this.tokenizer = tokenizer;
         }
-    }
 
-    private void addFieldDescription(Map<String, String> mapping, Field member) {
-        Field field = member;
-        if (field.isAnnotationPresent(ColumnName.class)) {
-            mapping.put(field.getAnnotation(ColumnName.class).name(), field.getName());
-        } else {
-            mapping.put(field.getName(), field.getName());
+        @Override
+        public long byteOffset() {
+            return tokenizer.byteOffset();
         }
     }
 
-    private List<Member> getAllMembers() {
-        List<Member> members = new ArrayList<Member>();
-        members.addAll(asList(bean.getDeclaredFields()));
-        members.addAll(asList(bean.getDeclaredMethods()));
-        return members;
+    public static boolean isValid(Class beanClass) {
+        return beanClass.isAnnotationPresent(CSVImporter.class);
     }
 }
@@ -0,0 +1,14 @@
+package org.motechproject.importer.model;
+
+import java.io.Closeable;
+import java.util.List;
+
+/**
+ * Reads the records of an import a chunk at a time, so that only one chunk is held in memory while it is
+ * validated and posted. Closing it closes the file it reads.
+ */
+public interface ChunkReader extends Closeable {
+
+    //Returns null once there are no more records.
+    List<Object> nextChunk() throws Exception;
+}
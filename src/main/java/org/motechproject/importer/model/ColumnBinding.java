@@ -0,0 +1,109 @@
+package org.motechproject.importer.model;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * The properties of a bean that the columns of an import file are written to, compiled once from the column mapping
+ * into a {@link ColumnWriter} per column. It holds no state of a parse, so one binding serves concurrent imports;
+ * each parse gets its own {@link #binder(String[])} for the header of its file.
+ * <p/>
+ * Columns are matched the way HeaderColumnNameTranslateMappingStrategy matches them: the header is looked up in the
+ * column mapping, and the mapped name is matched against the property names ignoring case. A property is written
+ * through its setter, or through the field of the same name when it has none.
+ */
+public class ColumnBinding {
+
+    public static final String DEFAULT_DATE_FORMAT = "yyyy-MM-dd";
+
+    private final Class bean;
+    private final MethodHandle constructor;
+    private final Map<String, ColumnWriter> writers = new HashMap<>();
+
+    public ColumnBinding(Class bean, Map<String, String> columnMapping) {
+        this(bean, columnMapping, DEFAULT_DATE_FORMAT);
+    }
+
+    public ColumnBinding(Class bean, Map<String, String> columnMapping, String dateFormat) {
+        this.bean = bean;
+        this.constructor = constructor(bean);
+        Map<String, PropertyDescriptor> descriptors = new HashMap<>();
+        try {
+            for (PropertyDescriptor descriptor : Introspector.getBeanInfo(bean).getPropertyDescriptors()) {
+                descriptors.put(descriptor.getName().toUpperCase().trim(), descriptor);
+            }
+        } catch (IntrospectionException e) {
+            throw new RuntimeException("Could not introspect " + bean.getName() + ": " + e.getMessage());
+        }
+        for (Map.Entry<String, String> column : columnMapping.entrySet()) {
+            String propertyName = column.getValue();
+            if (propertyName != null && propertyName.trim().length() > 0) {
+                ColumnWriter writer = writer(descriptors.get(propertyName.toUpperCase().trim()), propertyName.trim(), dateFormat);
+                if (writer != null) {
+                    writers.put(column.getKey(), writer);
+                }
+            }
+        }
+    }
+
+    RecordBinder binder(String[] header) {
+        ColumnWriter[] columnWriters = new ColumnWriter[header.length];
+        for (int col = 0; col < columnWriters.length; col++) {
+            ColumnWriter writer = writers.get(header[col]);
+            columnWriters[col] = writer != null ? writer.forParse() : null;
+        }
+        return new RecordBinder(bean, constructor, columnWriters);
+    }
+
+    private ColumnWriter writer(PropertyDescriptor descriptor, String propertyName, String dateFormat) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            if (descriptor != null && descriptor.getWriteMethod() != null) {
+                Method setter = descriptor.getWriteMethod();
+                setter.setAccessible(true);
+                return ColumnWriter.compile(descriptor.getPropertyType(), lookup.unreflect(setter),
+                        descriptor.getPropertyEditorClass(), dateFormat);
+            }
+            Field field = field(propertyName);
+            if (field == null) return null;
+            field.setAccessible(true);
+            return ColumnWriter.compile(field.getType(), lookup.unreflectSetter(field), null, dateFormat);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Could not bind " + bean.getName() + "." + propertyName + ": " + e.getMessage());
+        }
+    }
+
+    private Field field(String name) {
+        for (Class type = bean; type != null && type != Object.class; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (field.getName().equalsIgnoreCase(name) && !Modifier.isStatic(modifiers) && !Modifier.isFinal(modifiers)) {
+                    return field;
+                }
+            }
+        }
+        return null;
+    }
+
+    //Null when the bean cannot be instantiated; binding a record then fails as Class.newInstance would.
+    private static MethodHandle constructor(Class bean) {
+        try {
+            Constructor constructor = bean.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return MethodHandles.lookup().unreflectConstructor(constructor).asType(methodType(Object.class));
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package org.motechproject.importer.model;
+
+import java.beans.PropertyEditor;
+import java.beans.PropertyEditorManager;
+import java.lang.invoke.MethodHandle;
+import java.text.ParseException;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Writes one column of a CSV record to a property of a bean, through a method handle on the property's setter, or
+ * on its field when it has no setter. The column is converted from the characters of the record: primitive
+ * properties are written without boxing, and no PropertyEditor is involved for the common types.
+ * <p/>
+ * Values are converted the way the JDK property editors used by CsvToBean convert them: the column is trimmed,
+ * integers are decoded with Integer.decode, booleans are "true" or "false" ignoring case and enums are looked up by
+ * name. Dates, which have no property editor, are parsed with the date format of the importer; a blank date leaves
+ * the property null. Other types still go through their PropertyEditor.
+ */
+abstract class ColumnWriter {
+
+    private static final long NOT_DECIMAL = Long.MIN_VALUE;
+
+    abstract void write(Object bean, char[] chars, int start, int end) throws Throwable;
+
+    //A writer for one parse. Writers holding a date format or a property editor are not shared between parses.
+    ColumnWriter forParse() {
+        return this;
+    }
+
+    static ColumnWriter compile(Class type, MethodHandle writer, Class editorClass, String dateFormat) {
+        if (editorClass != null) return new EditorWriter(writer, type, editorClass);
+        if (type == int.class) return new IntWriter(writer);
+        if (type == long.class) return new LongWriter(writer);
+        if (type == double.class) return new DoubleWriter(writer);
+        if (type == boolean.class) return new BooleanWriter(writer);
+        if (type == String.class) {
+            return new ObjectWriter(writer) {
+                @Override
+                Object convert(char[] chars, int start, int end) {
+                    return new String(chars, start, end - start);
+                }
+            };
+        }
+        if (type == Integer.class) {
+            return new ObjectWriter(writer) {
+                @Override
+                Object convert(char[] chars, int start, int end) {
+                    return parseInt(chars, start, end);
+                }
+            };
+        }
+        if (type == Long.class) {
+            return new ObjectWriter(writer) {
+                @Override
+                Object convert(char[] chars, int start, int end) {
+                    return parseLong(chars, start, end);
+                }
+            };
+        }
+        if (type == Double.class) {
+            return new ObjectWriter(writer) {
+                @Override
+                Object convert(char[] chars, int start, int end) {
+                    return Double.valueOf(new String(chars, start, end - start));
+                }
+            };
+        }
+        if (type == Boolean.class) {
+            return new ObjectWriter(writer) {
+                @Override
+                Object convert(char[] chars, int start, int end) {
+                    return parseBoolean(chars, start, end);
+                }
+            };
+        }
+        if (type.isEnum()) return new EnumWriter(writer, type);
+        if (type == Date.class) return new DateWriter(writer, dateFormat);
+        return new EditorWriter(writer, type, null);
+    }
+
+    static int parseInt(char[] chars, int start, int end) {
+        long value = decimal(chars, start, end);
+        if (value != NOT_DECIMAL && value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+            return (int) value;
+        }
+        return Integer.decode(new String(chars, start, end - start));
+    }
+
+    static long parseLong(char[] chars, int start, int end) {
+        long value = decimal(chars, start, end);
+        return value != NOT_DECIMAL ? value : Long.decode(new String(chars, start, end - start));
+    }
+
+    static boolean parseBoolean(char[] chars, int start, int end) {
+        if (matches(chars, start, end, "true")) return true;
+        if (matches(chars, start, end, "false")) return false;
+        throw new IllegalArgumentException(new String(chars, start, end - start));
+    }
+
+    //A plain decimal of at most 18 digits. Anything else, octal and hex included, is left to Integer/Long.decode.
+    private static long decimal(char[] chars, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (chars[i] == '-' || chars[i] == '+')) {
+            negative = chars[i] == '-';
+            i++;
+        }
+        int digits = end - i;
+        if (digits == 0 || digits > 18 || (digits > 1 && chars[i] == '0')) return NOT_DECIMAL;
+        long value = 0;
+        for (; i < end; i++) {
+            char c = chars[i];
+            if (c < '0' || c > '9') return NOT_DECIMAL;
+            value = value * 10 + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    private static boolean matches(char[] chars, int start, int end, String text) {
+        if (end - start != text.length()) return false;
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.toLowerCase(chars[start + i]) != text.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    static int trimStart(char[] chars, int start, int end) {
+        while (start < end && chars[start] <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    static int trimEnd(char[] chars, int start, int end) {
+        while (end > start && chars[end - 1] <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    private static class IntWriter extends ColumnWriter {
+        private final MethodHandle writer;
+
+        IntWriter(MethodHandle writer) {
+            this.writer = writer.asType(methodType(void.class, Object.class, int.class));
+        }
+
+        @Override
+        void write(Object bean, char[] chars, int start, int end) throws Throwable {
+            int from = trimStart(chars, start, end);
+            writer.invokeExact(bean, parseInt(chars, from, trimEnd(chars, from, end)));
+        }
+    }
+
+    private static class LongWriter extends ColumnWriter {
+        private final MethodHandle writer;
+
+        LongWriter(MethodHandle writer) {
+            this.writer = writer.asType(methodType(void.class, Object.class, long.class));
+        }
+
+        @Override
+        void write(Object bean, char[] chars, int start, int end) throws Throwable {
+            int from = trimStart(chars, start, end);
+            writer.invokeExact(bean, parseLong(chars, from, trimEnd(chars, from, end)));
+        }
+    }
+
+    private static class DoubleWriter extends ColumnWriter {
+        private final MethodHandle writer;
+
+        DoubleWriter(MethodHandle writer) {
+            this.writer = writer.asType(methodType(void.class, Object.class, double.class));
+        }
+
+        @Override
+        void write(Object bean, char[] chars, int start, int end) throws Throwable {
+            int from = trimStart(chars, start, end);
+            writer.invokeExact(bean, Double.parseDouble(new String(chars, from, trimEnd(chars, from, end) - from)));
+        }
+    }
+
+    private static class BooleanWriter extends ColumnWriter {
+        private final MethodHandle writer;
+
+        BooleanWriter(MethodHandle writer) {
+            this.writer = writer.asType(methodType(void.class, Object.class, boolean.class));
+        }
+
+        @Override
+        void write(Object bean, char[] chars, int start, int end) throws Throwable {
+            int from = trimStart(chars, start, end);
+            writer.invokeExact(bean, parseBoolean(chars, from, trimEnd(chars, from, end)));
+        }
+    }
+
+    //Writes a trimmed column converted to an object.
+    private abstract static class ObjectWriter extends ColumnWriter {
+        final MethodHandle writer;
+
+        ObjectWriter(MethodHandle writer) {
+            this.writer = writer.asType(methodType(void.class, Object.class, Object.class));
+        }
+
+        @Override
+        void write(Object bean, char[] chars, int start, int end) throws Throwable {
+            int from = trimStart(chars, start, end);
+            writer.invokeExact(bean, convert(chars, from, trimEnd(chars, from, end)));
+        }
+
+        abstract Object convert(char[] chars, int start, int end) throws Exception;
+    }
+
+    private static class EnumWriter extends ObjectWriter {
+        private final Class type;
+
+        EnumWriter(MethodHandle writer, Class type) {
+            super(writer);
+            this.type = type;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Object convert(char[] chars, int start, int end) {
+            return Enum.valueOf(type, new String(chars, start, end - start));
+        }
+    }
+
+    private static class DateWriter extends ObjectWriter {
+        private final String pattern;
+        private final SimpleDateFormat format;
+
+        DateWriter(MethodHandle writer, String pattern) {
+            super(writer);
+            this.pattern = pattern;
+            this.format = new SimpleDateFormat(pattern);
+            format.setLenient(false);
+        }
+
+        @Override
+        Object convert(char[] chars, int start, int end) throws ParseException {
+            if (start == end) return null;
+            String text = new String(chars, start, end - start);
+            ParsePosition position = new ParsePosition(0);
+            Date date = format.parse(text, position);
+            if (date == null || position.getIndex() != text.length()) {
+                throw new ParseException("Unparseable date: \"" + text + "\", expected " + pattern, position.getErrorIndex());
+            }
+            return date;
+        }
+
+        @Override
+        ColumnWriter forParse() {
+            return new DateWriter(writer, pattern);
+        }
+    }
+
+    //Converts like CsvToBean: through the property editor, or passes the untrimmed column when there is none.
+    private static class EditorWriter extends ColumnWriter {
+        private final MethodHandle writer;
+        private final Class type;
+        private final Class editorClass;
+        private PropertyEditor editor;
+
+        EditorWriter(MethodHandle writer, Class type, Class editorClass) {
+            this.writer = writer.asType(methodType(void.class, Object.class, Object.class));
+            this.type = type;
+            this.editorClass = editorClass;
+        }
+
+        @Override
+        void write(Object bean, char[] chars, int start, int end) throws Throwable {
+            Object value = new String(chars, start, end - start);
+            if (editor != null) {
+                editor.setAsText(((String) value).trim());
+                value = editor.getValue();
+            }
+            writer.invokeExact(bean, value);
+        }
+
+        @Override
+        ColumnWriter forParse() {
+            EditorWriter columnWriter = new EditorWriter(writer, type, editorClass);
+            try {
+                columnWriter.editor = editorClass != null
+                        ? (PropertyEditor) editorClass.newInstance()
+                        : PropertyEditorManager.findEditor(type);
+            } catch (InstantiationException | IllegalAccessException e) {
+                throw new RuntimeException("Could not create property editor " + editorClass.getName(), e);
+            }
+            return columnWriter;
+        }
+    }
+}
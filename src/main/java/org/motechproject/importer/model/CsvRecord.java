@@ -0,0 +1,132 @@
+package org.motechproject.importer.model;
+
+import java.util.Arrays;
+
+/**
+ * The fields of one CSV record, as read by a {@link CsvTokenizer}. All fields share one character array that is
+ * reused for every record, so a field is only copied when it is turned into a String.
+ */
+public class CsvRecord {
+
+    private char[] chars;
+    private int length;
+    private int[] fieldEnds;
+    private int fieldCount;
+    private boolean blank = true;
+
+    public CsvRecord() {
+        this(new char[256], 0, new int[16], 0);
+    }
+
+    private CsvRecord(char[] chars, int length, int[] fieldEnds, int fieldCount) {
+        this.chars = chars;
+        this.length = length;
+        this.fieldEnds = fieldEnds;
+        this.fieldCount = fieldCount;
+    }
+
+    //A read-only copy trimmed to this record, for records kept after the next one is read.
+    CsvRecord copy() {
+        CsvRecord copy = new CsvRecord(Arrays.copyOf(chars, length), length, Arrays.copyOf(fieldEnds, fieldCount), fieldCount);
+        copy.blank = blank;
+        return copy;
+    }
+
+    void clear() {
+        length = 0;
+        fieldCount = 0;
+        blank = true;
+    }
+
+    void append(char c) {
+        if (length == chars.length) {
+            char[] grown = new char[chars.length * 2];
+            System.arraycopy(chars, 0, grown, 0, length);
+            chars = grown;
+        }
+        chars[length++] = c;
+        if (c > ' ') {
+            blank = false;
+        }
+    }
+
+    void append(char[] source, int offset, int count) {
+        if (length + count > chars.length) {
+            char[] grown = new char[Math.max(chars.length * 2, length + count)];
+            System.arraycopy(chars, 0, grown, 0, length);
+            chars = grown;
+        }
+        System.arraycopy(source, offset, chars, length, count);
+        if (blank) {
+            for (int i = offset; i < offset + count; i++) {
+                if (source[i] > ' ') {
+                    blank = false;
+                    break;
+                }
+            }
+        }
+        length += count;
+    }
+
+    void append(String text) {
+        int count = text.length();
+        if (length + count > chars.length) {
+            char[] grown = new char[Math.max(chars.length * 2, length + count)];
+            System.arraycopy(chars, 0, grown, 0, length);
+            chars = grown;
+        }
+        text.getChars(0, count, chars, length);
+        if (blank) {
+            for (int i = length; i < length + count; i++) {
+                if (chars[i] > ' ') {
+                    blank = false;
+                    break;
+                }
+            }
+        }
+        length += count;
+    }
+
+    void endField() {
+        if (fieldCount == fieldEnds.length) {
+            int[] grown = new int[fieldEnds.length * 2];
+            System.arraycopy(fieldEnds, 0, grown, 0, fieldCount);
+            fieldEnds = grown;
+        }
+        fieldEnds[fieldCount++] = length;
+    }
+
+    public int size() {
+        return fieldCount;
+    }
+
+    //True when every field is empty or whitespace, the lines MyCsvToBean skips.
+    public boolean isBlank() {
+        return blank;
+    }
+
+    public char[] chars() {
+        return chars;
+    }
+
+    public int start(int field) {
+        return field == 0 ? 0 : fieldEnds[field - 1];
+    }
+
+    public int end(int field) {
+        return fieldEnds[field];
+    }
+
+    public String field(int field) {
+        int start = start(field);
+        return new String(chars, start, end(field) - start);
+    }
+
+    public String[] toArray() {
+        String[] fields = new String[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            fields[i] = field(i);
+        }
+        return fields;
+    }
+}
@@ -0,0 +1,192 @@
+package org.motechproject.importer.model;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+
+import static au.com.bytecode.opencsv.CSVReader.DEFAULT_ESCAPE_CHARACTER;
+import static au.com.bytecode.opencsv.CSVReader.DEFAULT_QUOTE_CHARACTER;
+import static au.com.bytecode.opencsv.CSVReader.DEFAULT_SEPARATOR;
+
+/**
+ * Splits CSV into records by scanning a large character buffer, without a String per line or per field.
+ * <p/>
+ * Records are split exactly as opencsv 2.0's CSVReader splits them: lines end at \n, \r or \r\n; a quoted field may
+ * span lines, which are joined with \n; a doubled quote inside quotes is a quote; the escape character escapes a
+ * quote or another escape inside quotes and drops itself and the next character anywhere else; and a quote in the
+ * middle of a field, away from the start of the line and from separators, is kept.
+ */
+public class CsvTokenizer implements RecordReader {
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private static final int END = -1;
+
+    private final Reader reader;
+    private final char separator;
+    private final char quote;
+    private final char escape;
+    private final char[] buffer;
+    private int position;
+    private int limit;
+    private boolean endOfInput;
+    private final ByteCounter byteCounter;
+    private long discardedBytes;
+
+    public CsvTokenizer(Reader reader) {
+        this(reader, DEFAULT_SEPARATOR, DEFAULT_QUOTE_CHARACTER, DEFAULT_ESCAPE_CHARACTER, DEFAULT_BUFFER_SIZE);
+    }
+
+    public CsvTokenizer(Reader reader, char separator, char quote, char escape, int bufferSize) {
+        this(reader, separator, quote, escape, bufferSize, null, 0);
+    }
+
+    /**
+     * A tokenizer that keeps track of the offset in bytes of the records it reads, for a reader decoding the given
+     * charset from the given byte offset of a file.
+     */
+    public CsvTokenizer(Reader reader, Charset charset, long byteOffset) {
+        this(reader, DEFAULT_SEPARATOR, DEFAULT_QUOTE_CHARACTER, DEFAULT_ESCAPE_CHARACTER, DEFAULT_BUFFER_SIZE, charset, byteOffset);
+    }
+
+    CsvTokenizer(Reader reader, char separator, char quote, char escape, int bufferSize, Charset charset, long byteOffset) {
+        this.reader = reader;
+        this.separator = separator;
+        this.quote = quote;
+        this.escape = escape;
+        this.buffer = new char[Math.max(2, bufferSize)];
+        this.byteCounter = charset != null ? new ByteCounter(charset) : null;
+        this.discardedBytes = byteOffset;
+    }
+
+    //The byte offset of the record after the last one read. Only known when the tokenizer was given a charset.
+    public long byteOffset() {
+        if (byteCounter == null) {
+            throw new IllegalStateException("The tokenizer was not given the charset of its input");
+        }
+        return discardedBytes + byteCounter.length(buffer, 0, position);
+    }
+
+    //Reads the next record into the given one, returns false once the input is exhausted.
+    @Override
+    public boolean next(CsvRecord record) throws IOException {
+        record.clear();
+        if (peek(0) == END) {
+            return false;
+        }
+
+        boolean inQuotes = false;
+        do {
+            if (inQuotes) {
+                record.append('\n');
+                if (peek(0) == END) {
+                    break;
+                }
+            }
+            inQuotes = readLine(record, inQuotes);
+        } while (inQuotes);
+        record.endField();
+        return true;
+    }
+
+    private boolean readLine(CsvRecord record, boolean inQuotes) throws IOException {
+        int index = 0;
+        int previous = END;
+        while (true) {
+            int run = position;
+            while (run < limit && isPlain(buffer[run])) {
+                run++;
+            }
+            if (run > position) {
+                record.append(buffer, position, run - position);
+                index += run - position;
+                previous = buffer[run - 1];
+                position = run;
+            }
+
+            int c = peek(0);
+            if (c == END || c == '\n' || c == '\r') {
+                skipLineTerminator(c);
+                return inQuotes;
+            }
+            int next = peek(1);
+            if (next == '\n' || next == '\r') {
+                next = END;
+            }
+
+            int consumed = 1;
+            if (c == escape) {
+                if (inQuotes && (next == quote || next == escape)) {
+                    record.append((char) next);
+                }
+                if (next != END) {
+                    consumed = 2;
+                }
+            } else if (c == quote) {
+                if (inQuotes && next == quote) {
+                    record.append(quote);
+                    consumed = 2;
+                } else {
+                    inQuotes = !inQuotes;
+                    if (index > 2 && previous != separator && next != END && next != separator) {
+                        record.append(quote);
+                    }
+                }
+            } else if (c == separator && !inQuotes) {
+                record.endField();
+            } else {
+                record.append((char) c);
+            }
+
+            previous = consumed == 2 ? next : c;
+            index += consumed;
+            position += consumed;
+        }
+    }
+
+    private boolean isPlain(char c) {
+        return c != separator && c != quote && c != escape && c != '\n' && c != '\r';
+    }
+
+    private void skipLineTerminator(int c) throws IOException {
+        if (c == END) {
+            return;
+        }
+        position++;
+        if (c == '\r' && peek(0) == '\n') {
+            position++;
+        }
+    }
+
+    private int peek(int offset) throws IOException {
+        if (position + offset >= limit && !fill(offset + 1)) {
+            return END;
+        }
+        return buffer[position + offset];
+    }
+
+    private boolean fill(int required) throws IOException {
+        if (position > 0) {
+            if (byteCounter != null) {
+                discardedBytes += byteCounter.length(buffer, 0, position);
+            }
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+        }
+        while (limit < required && !endOfInput) {
+            int read = reader.read(buffer, limit, buffer.length - limit);
+            if (read < 0) {
+                endOfInput = true;
+            } else {
+                limit += read;
+            }
+        }
+        return limit >= required;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
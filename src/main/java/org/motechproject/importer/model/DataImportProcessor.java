@@ -3,15 +3,17 @@ package org.motechproject.importer.model;
 
 
 
-import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.exception.ExceptionUtils;
 import org.motechproject.export.annotation.SyncFlw;
+import org.motechproject.importer.annotation.ColumnName;
 import org.motechproject.importer.annotation.Post;
 import org.motechproject.importer.annotation.Sync;
 import org.motechproject.importer.annotation.Validate;
 import org.motechproject.importer.domain.CSVImportResponse;
 import org.motechproject.importer.domain.Error;
+import org.motechproject.importer.domain.FileImportResult;
+import org.motechproject.importer.domain.ImportProgress;
 import org.motechproject.importer.domain.ValidationException;
 import org.motechproject.importer.domain.ValidationResponse;
 import org.slf4j.Logger;
@@ -19,25 +21,42 @@ import org.slf4j.LoggerFactory;
 
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.Reader;
-import java.io.StringReader;
+import java.io.InputStream;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.util.Arrays.asList;
 
 public abstract class DataImportProcessor {
+    private static final String ERRORS_FILE_NAME = "errors.csv";
+
     private Object importer;
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
     private Method postMethod;
     private Method validateMethod;
+    private BatchValidator batchValidator;
     private Method syncMethod;
     private Method syncFlwMethod;
+    private int chunkSize;
+    private int fileConcurrency = 1;
+    private boolean checkpointing;
+    private int pipelineDepth;
     protected Class bean;
 
     protected DataImportProcessor(Class bean) {
@@ -53,6 +72,8 @@ public abstract class DataImportProcessor {
             }
             if (method.isAnnotationPresent(Validate.class)) {
                 validateMethod = method;
+                Validate validate = method.getAnnotation(Validate.class);
+                batchValidator = validate.threadSafe() ? new BatchValidator(importer, method, validate.batchSize()) : null;
             }
             if(method.isAnnotationPresent(Sync.class)) {
             	syncMethod = method;
@@ -64,39 +85,238 @@ public abstract class DataImportProcessor {
     }
 
     public CSVImportResponse process(Boolean shouldUpdateValidRecords, String... filePaths) {
+        return process(shouldUpdateValidRecords, new ImportProgress(), filePaths);
+    }
+
+    //Counts the rows of the files in the given progress as they are parsed, validated and posted.
+    public CSVImportResponse process(Boolean shouldUpdateValidRecords, ImportProgress progress, String... filePaths) {
+        List<FileImportResult> fileImportResults = new ArrayList<>();
+        if (fileConcurrency > 1 && filePaths.length > 1) {
+            fileImportResults = processConcurrently(shouldUpdateValidRecords, progress, filePaths);
+        } else {
+            for (String filePath : filePaths) {
+                FileImportResult fileImportResult = process(filePath, shouldUpdateValidRecords, progress, ERRORS_FILE_NAME);
+                fileImportResults.add(fileImportResult);
+                if (!fileImportResult.isImportSuccessful()) {
+                    break;
+                }
+            }
+        }
+
         String lastRunFilePath = StringUtils.EMPTY;
-        try {
+        for (FileImportResult fileImportResult : fileImportResults) {
+            if (!fileImportResult.isImportSuccessful()) {
+                return new CSVImportResponse(lastRunFilePath, false, fileImportResults);
+            }
+            lastRunFilePath = fileImportResult.getFileName();
+        }
+        //Checkpoints of imported files are kept until every file is imported, so that a rerun skips them.
+        if (isCheckpointed()) {
             for (String filePath : filePaths) {
-                ValidationResponse validationResponse = process(new FileReader(filePath), shouldUpdateValidRecords);
+                ImportCheckpoint.delete(new File(filePath));
+            }
+        }
+        return new CSVImportResponse(lastRunFilePath, true, fileImportResults);
+    }
 
-                if (!validationResponse.isValid()) {
-                    processErrors(validationResponse.getErrors(), filePath);
-                    throw new ValidationException();
-                }
-                lastRunFilePath = new File(filePath).getName();
+    private List<FileImportResult> processConcurrently(final Boolean shouldUpdateValidRecords, final ImportProgress progress, String... filePaths) {
+        ExecutorService fileImporters = Executors.newFixedThreadPool(Math.min(fileConcurrency, filePaths.length));
+        try {
+            List<Future<FileImportResult>> futureResults = new ArrayList<>();
+            for (final String filePath : filePaths) {
+                futureResults.add(fileImporters.submit(new Callable<FileImportResult>() {
+                    @Override
+                    public FileImportResult call() {
+                        return process(filePath, shouldUpdateValidRecords, progress, errorsFileName(filePath));
+                    }
+                }));
             }
+
+            List<FileImportResult> fileImportResults = new ArrayList<>();
+            for (Future<FileImportResult> futureResult : futureResults) {
+                fileImportResults.add(futureResult.get());
+            }
+            return fileImportResults;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while importing " + entity());
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            fileImporters.shutdownNow();
+        }
+    }
+
+    private FileImportResult process(String filePath, Boolean shouldUpdateValidRecords, ImportProgress progress, String errorsFileName) {
+        File file = new File(filePath);
+        String fileName = file.getName();
+        List<Error> errors = new ArrayList<>();
+        try {
+            ValidationResponse validationResponse = process(file, shouldUpdateValidRecords, progress);
+            errors = validationResponse.getErrors();
+
+            if (!validationResponse.isValid()) {
+                processErrors(errors, filePath, errorsFileName);
+                throw new ValidationException();
+            }
+            return new FileImportResult(fileName, true, errors);
         } catch (Exception e) {
             System.err.println("Error while importing csv : " + ExceptionUtils.getFullStackTrace(e));
             logger.error("Error while importing csv : " + ExceptionUtils.getFullStackTrace(e));
-            return new CSVImportResponse(lastRunFilePath, false);
+            if (!(e instanceof ValidationException)) {
+                errors = new ArrayList<>(errors);
+                errors.add(new Error(fileName + ": " + e));
+            }
+            return new FileImportResult(fileName, false, errors);
         }
-        return new CSVImportResponse(lastRunFilePath, true);
     }
 
-    private ValidationResponse process(Reader reader, Boolean shouldUpdateValidRecords) throws Exception {
-        List<Object> valuesFromFile = parse(reader);
-        ValidationResponse validationResponse = validate(valuesFromFile);
+    private ValidationResponse process(File file, Boolean shouldUpdateValidRecords, ImportProgress progress) throws Exception {
+        if (!isCheckpointed()) {
+            try (ChunkReader chunkReader = chunkReader(file, chunkSize > 0 ? chunkSize : Integer.MAX_VALUE)) {
+                return process(chunkReader, shouldUpdateValidRecords, progress, null, file.getName());
+            }
+        }
+
+        ImportCheckpoint checkpoint = ImportCheckpoint.open(file);
+        if (checkpoint.getByteOffset() > 0) {
+            logger.info("Resuming import of " + file.getName() + " from row " + checkpoint.getRowNumber()
+                    + " at byte " + checkpoint.getByteOffset());
+        }
+        try (ChunkReader chunkReader = resumableChunkReader(file, chunkSize, checkpoint.getByteOffset())) {
+            return process(chunkReader, shouldUpdateValidRecords, progress, checkpoint, file.getName());
+        }
+    }
+
+    private String errorsFileName(String filePath) {
+        String fileName = new File(filePath).getName();
+        int extensionIndex = fileName.lastIndexOf('.');
+        return (extensionIndex > 0 ? fileName.substring(0, extensionIndex) : fileName) + "-" + ERRORS_FILE_NAME;
+    }
+
+
+    //Without a chunk size, the chunk reader returns the whole file as its first chunk. With a checkpoint, reading
+    //starts at the checkpoint, which is advanced after each posted chunk.
+    private ValidationResponse process(ChunkReader chunkReader, Boolean shouldUpdateValidRecords, ImportProgress progress, ImportCheckpoint checkpoint, String name) throws Exception {
+        if (chunkSize > 0 && pipelineDepth > 0) {
+            return processPipelined(chunkReader, shouldUpdateValidRecords, progress, checkpoint, name);
+        }
+        List<Object> chunk = chunkReader.nextChunk();
+        if (chunk == null) {
+            boolean resumedAtTheEnd = checkpoint != null && checkpoint.getByteOffset() > 0;
+            return resumedAtTheEnd ? new ValidationResponse(true) : process(new ArrayList<Object>(), shouldUpdateValidRecords, progress);
+        }
+        if (chunkSize <= 0) {
+            progress.parsed(chunk.size());
+            return process(chunk, shouldUpdateValidRecords, progress);
+        }
+        ValidationResponse validationResponse = new ValidationResponse(true);
+        int rowOffset = checkpoint != null ? (int) checkpoint.getRowNumber() : 0;
+        do {
+            progress.parsed(chunk.size());
+            validationResponse.merge(process(chunk, shouldUpdateValidRecords, progress), rowOffset);
+            if (!validationResponse.isValid() && !shouldUpdateValidRecords) {
+                break;
+            }
+            rowOffset += chunk.size();
+            if (checkpoint != null) {
+                checkpoint.advance(((ResumableChunkReader) chunkReader).byteOffset(), rowOffset);
+            }
+        } while ((chunk = chunkReader.nextChunk()) != null);
+        return validationResponse;
+    }
+
+    //Posts the chunks in the same order and with the same row numbers as process does, while the next chunks are
+    //read, bound and validated on the threads of the pipeline.
+    private ValidationResponse processPipelined(ChunkReader chunkReader, final Boolean shouldUpdateValidRecords, final ImportProgress progress,
+                                                final ImportCheckpoint checkpoint, String name) throws Exception {
+        final ValidationResponse validationResponse = new ValidationResponse(true);
+        final int[] rowOffset = {checkpoint != null ? (int) checkpoint.getRowNumber() : 0};
+        ImportPipeline pipeline = new ImportPipeline(chunkReader, pipelineDepth) {
+            @Override
+            void parsed(List<Object> chunk) {
+                progress.parsed(chunk.size());
+            }
+
+            @Override
+            ValidationResponse validate(List<Object> chunk) throws Exception {
+                return DataImportProcessor.this.validate(chunk, progress);
+            }
+
+            @Override
+            boolean post(List<Object> chunk, ValidationResponse chunkValidationResponse, long byteOffset) throws Exception {
+                validationResponse.merge(DataImportProcessor.this.post(chunk, chunkValidationResponse, shouldUpdateValidRecords, progress), rowOffset[0]);
+                if (!validationResponse.isValid() && !shouldUpdateValidRecords) {
+                    return false;
+                }
+                rowOffset[0] += chunk.size();
+                if (checkpoint != null) {
+                    checkpoint.advance(byteOffset, rowOffset[0]);
+                }
+                return true;
+            }
+        };
+
+        int postedChunks;
+        try {
+            postedChunks = pipeline.run(name);
+        } finally {
+            logger.info("Pipelined import of " + name + ": " + pipeline.getStages());
+        }
+        if (postedChunks == 0 && (checkpoint == null || checkpoint.getByteOffset() == 0)) {
+            return process(new ArrayList<Object>(), shouldUpdateValidRecords, progress);
+        }
+        return validationResponse;
+    }
+
+    private ValidationResponse process(List<Object> valuesFromFile, Boolean shouldUpdateValidRecords, ImportProgress progress) throws Exception {
+        return post(valuesFromFile, validate(valuesFromFile, progress), shouldUpdateValidRecords, progress);
+    }
+
+    private ValidationResponse post(List<Object> valuesFromFile, ValidationResponse validationResponse, Boolean shouldUpdateValidRecords,
+                                    ImportProgress progress) throws Exception {
         if (validationResponse.isValid()) {
             invokePostMethod(valuesFromFile);
-        } else if (shouldUpdateValidRecords) {
-            List<Object> validRecords = (List<Object>) CollectionUtils.disjunction(valuesFromFile, validationResponse.getInvalidRecords());
+            progress.posted(valuesFromFile.size());
+            return validationResponse;
+        }
+
+        validationResponse.indexInvalidRecords(valuesFromFile);
+        if (shouldUpdateValidRecords) {
+            List<Object> validRecords = validationResponse.validRecords(valuesFromFile);
             invokePostMethod(validRecords);
+            progress.posted(validRecords.size());
         }
         return validationResponse;
     }
 
-    public String processContent(String content, Boolean shouldUpdateValidRecords) throws Exception {
-        ValidationResponse validationResponse = process(new StringReader(content), shouldUpdateValidRecords);
+    //Content is read as the import files are, as text by a CSV importer and as a workbook by an Excel importer.
+    public String processContent(InputStream content, Boolean shouldUpdateValidRecords) throws Exception {
+        return processContent(content, shouldUpdateValidRecords, new ImportProgress());
+    }
+
+    public String processContent(InputStream content, Boolean shouldUpdateValidRecords, ImportProgress progress) throws Exception {
+        return processContent(chunkReader(content, chunkSize > 0 ? chunkSize : Integer.MAX_VALUE), shouldUpdateValidRecords, progress);
+    }
+
+    public String processValidate(InputStream content) throws Exception {
+        return processValidate(parse(content));
+    }
+
+    public String download(InputStream content) throws Exception {
+        return download(parse(content));
+    }
+
+    public String processPersist(InputStream content) throws Exception {
+        return processPersist(parse(content));
+    }
+
+    //Imports the content read by the chunk reader, and returns its errors or null if it was valid.
+    protected String processContent(ChunkReader chunkReader, Boolean shouldUpdateValidRecords, ImportProgress progress) throws Exception {
+        ValidationResponse validationResponse;
+        try (ChunkReader contentReader = chunkReader) {
+            validationResponse = process(contentReader, shouldUpdateValidRecords, progress, null, "content");
+        }
 
         if (validationResponse.isValid()) {
             return null;
@@ -106,9 +326,8 @@ public abstract class DataImportProcessor {
         processErrors(validationResponse.getErrors(), stringWriter);
         return stringWriter.toString();
     }
-    
-    public String processValidate(String content) throws Exception {
-        List<Object> valuesFromFile = parse(new StringReader(content));
+
+    protected String processValidate(List<Object> valuesFromFile) throws Exception {
         ValidationResponse validationResponse = validate(valuesFromFile);
         if (validationResponse.isValid()) {
             return "passed";
@@ -116,17 +335,15 @@ public abstract class DataImportProcessor {
         	return "failed";
         }
     }
-    
-    public String download(String content) throws Exception{
-    	 List<Object> valuesFromFile = parse(new StringReader(content));
-         ValidationResponse validationResponse = validate(valuesFromFile);
-    	 StringWriter stringWriter = new StringWriter();
-         processErrors(validationResponse.getErrors(), stringWriter);
-         return stringWriter.toString();
+
+    protected String download(List<Object> valuesFromFile) throws Exception {
+        ValidationResponse validationResponse = validate(valuesFromFile);
+        StringWriter stringWriter = new StringWriter();
+        processErrors(validationResponse.getErrors(), stringWriter);
+        return stringWriter.toString();
     }
-    
-    public String processPersist(String content) throws Exception {
-        List<Object> valuesFromFile = parse(new StringReader(content));
+
+    protected String processPersist(List<Object> valuesFromFile) throws Exception {
         return invokePostMethod(valuesFromFile);
     }
     
@@ -156,17 +373,25 @@ public abstract class DataImportProcessor {
     	return result;
     }
 
-    private ValidationResponse validate(List<Object> valuesFromFile) throws IllegalAccessException, InvocationTargetException {
+    private ValidationResponse validate(List<Object> valuesFromFile, ImportProgress progress) throws Exception {
+        ValidationResponse validationResponse = validate(valuesFromFile);
+        progress.validated(valuesFromFile.size(), validationResponse.getErrors().size());
+        return validationResponse;
+    }
+
+    private ValidationResponse validate(List<Object> valuesFromFile) throws Exception {
         ValidationResponse validationResponse = new ValidationResponse(true);
-        if (validateMethod != null) {
+        if (batchValidator != null) {
+            validationResponse = batchValidator.validate(valuesFromFile);
+        } else if (validateMethod != null) {
             validationResponse = (ValidationResponse) validateMethod.invoke(importer, valuesFromFile);
         }
         return validationResponse;
     }
 
-    private void processErrors(List<Error> errors, String filePath) throws IOException {
+    private void processErrors(List<Error> errors, String filePath, String errorsFileName) throws IOException {
         String fileDirectory = new File(new File(filePath).getAbsolutePath()).getParent();
-        File errorsFile = new File(fileDirectory + File.separator + "errors.csv");
+        File errorsFile = new File(fileDirectory + File.separator + errorsFileName);
         errorsFile.createNewFile();
 
         BufferedWriter writer = new BufferedWriter(new FileWriter(errorsFile));
@@ -181,7 +406,131 @@ public abstract class DataImportProcessor {
         writer.close();
     }
 
+    public int getFileConcurrency() {
+        return fileConcurrency;
+    }
+
+    public void setFileConcurrency(int fileConcurrency) {
+        this.fileConcurrency = fileConcurrency;
+    }
+
+    public boolean isCheckpointing() {
+        return checkpointing;
+    }
+
+    //Only importers that can resume from a checkpoint, see supportsCheckpoints, can be checkpointed.
+    public void setCheckpointing(boolean checkpointing) {
+        if (checkpointing && !supportsCheckpoints()) {
+            throw new UnsupportedOperationException(getClass().getSimpleName() + " cannot resume imports from a checkpoint");
+        }
+        this.checkpointing = checkpointing;
+    }
+
+    private boolean isCheckpointed() {
+        return checkpointing && chunkSize > 0;
+    }
+
+    public int getPipelineDepth() {
+        return pipelineDepth;
+    }
+
+    public void setPipelineDepth(int pipelineDepth) {
+        this.pipelineDepth = pipelineDepth;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    //Importers that override resumableChunkReader return true.
+    protected boolean supportsCheckpoints() {
+        return false;
+    }
+
+    //Reads a file from a checkpointed byte offset; only called when supportsCheckpoints.
+    protected ResumableChunkReader resumableChunkReader(File file, int chunkSize, long byteOffset) throws Exception {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " cannot resume imports from a checkpoint");
+    }
+
+    //Reads an import file as a stream; importers that need the file itself override this.
+    protected ChunkReader chunkReader(File file, int chunkSize) throws Exception {
+        InputStream input = new FileInputStream(file);
+        try {
+            return chunkReader(input, chunkSize);
+        } catch (Exception e) {
+            input.close();
+            throw e;
+        }
+    }
+
+    //Splits the parsed records into chunks; importers that can parse incrementally override this to stream them.
+    protected ChunkReader chunkReader(final InputStream input, final int chunkSize) throws Exception {
+        final List<Object> valuesFromFile = parse(input);
+        return new ChunkReader() {
+            private int from = 0;
+
+            @Override
+            public List<Object> nextChunk() {
+                if (valuesFromFile == null || from >= valuesFromFile.size()) {
+                    return null;
+                }
+                int to = Math.min(from + chunkSize, valuesFromFile.size());
+                List<Object> chunk = valuesFromFile.subList(from, to);
+                from = to;
+                return chunk;
+            }
+
+            @Override
+            public void close() throws IOException {
+                input.close();
+            }
+        };
+    }
+
+    //Maps the column names of an import file, from @ColumnName or the member name, to the properties of the bean.
+    protected Map<String, String> getColumnMapping() {
+        Map<String, String> mapping = new HashMap<String, String>();
+        List<Member> members = getAllMembers();
+        for (Member member : members) {
+            if (member instanceof Field) {
+                addFieldDescription(mapping, (Field) member);
+            } else if (member instanceof Method) {
+                addMethodDescription(mapping, (Method) member);
+            }
+        }
+        return mapping;
+    }
+
+    private void addMethodDescription(Map<String, String> mapping, Method member) {
+        Method method = member;
+        if (method.isAnnotationPresent(ColumnName.class)) {
+            mapping.put(method.getAnnotation(ColumnName.class).name(), method.getName().replace("set", ""));
+        } else {
+            mapping.put(method.getName(), method.getName().replace("set", ""));
+        }
+    }
+
+    private void addFieldDescription(Map<String, String> mapping, Field member) {
+        Field field = member;
+        if (field.isAnnotationPresent(ColumnName.class)) {
+            mapping.put(field.getAnnotation(ColumnName.class).name(), field.getName());
+        } else {
+            mapping.put(field.getName(), field.getName());
+        }
+    }
+
+    private List<Member> getAllMembers() {
+        List<Member> members = new ArrayList<Member>();
+        members.addAll(asList(bean.getDeclaredFields()));
+        members.addAll(asList(bean.getDeclaredMethods()));
+        return members;
+    }
+
     public abstract String entity();
 
-    public abstract List<Object> parse(Reader reader) throws Exception;
+    public abstract List<Object> parse(InputStream input) throws Exception;
 }
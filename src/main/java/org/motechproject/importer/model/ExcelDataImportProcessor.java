@@ -2,26 +2,92 @@ package org.motechproject.importer.model;
 
 import org.motechproject.importer.annotation.ExcelImporter;
 
-import java.io.Reader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Imports the first sheet of .xls and .xlsx files, whose first row is the header. Rows are streamed from the file
+ * and bound to the bean with the same column mapping as CSV imports. Excel files are binary, so content is
+ * imported from an input stream rather than a String.
+ */
 public class ExcelDataImportProcessor extends DataImportProcessor {
 
     private Object importer;
+    private ColumnBinding columnBinding;
+    private String dateFormat;
 
     public ExcelDataImportProcessor(Object importer) {
         super(importer, importer.getClass().getAnnotation(ExcelImporter.class).bean());
         this.importer = importer;
-
+        this.dateFormat = importer.getClass().getAnnotation(ExcelImporter.class).dateFormat();
+        this.columnBinding = new ColumnBinding(bean, getColumnMapping(), dateFormat);
+        setChunkSize(importer.getClass().getAnnotation(ExcelImporter.class).chunkSize());
+        setPipelineDepth(importer.getClass().getAnnotation(ExcelImporter.class).pipelineDepth());
     }
 
     public String entity() {
         return importer.getClass().getAnnotation(ExcelImporter.class).entity();
     }
 
-    public List<Object> parse(Reader reader){
-        //Implement logic specific to excel parsing
-        return null;
+    public List<Object> parse(File file) throws Exception {
+        try (ChunkReader chunkReader = chunkReader(file, Integer.MAX_VALUE)) {
+            List<Object> beans = chunkReader.nextChunk();
+            return beans != null ? beans : new ArrayList<Object>();
+        }
+    }
+
+    //The content is spooled to a temporary file, which the .xlsx reader needs for random access to its parts.
+    @Override
+    public List<Object> parse(InputStream input) throws Exception {
+        File file = spool(input);
+        try {
+            return parse(file);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Override
+    protected ChunkReader chunkReader(File file, int chunkSize) throws Exception {
+        return new BeanReader(ExcelRecordReader.open(file, dateFormat), "Excel", columnBinding, chunkSize);
+    }
+
+    //Streams the rows of the spooled content like those of a file, and deletes the spooled file once it is closed.
+    @Override
+    protected ChunkReader chunkReader(final InputStream input, int chunkSize) throws Exception {
+        final File file = spool(input);
+        try {
+            return new BeanReader(ExcelRecordReader.open(file, dateFormat), "Excel", columnBinding, chunkSize) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                        input.close();
+                    } finally {
+                        file.delete();
+                    }
+                }
+            };
+        } catch (Exception | Error e) {
+            file.delete();
+            throw e;
+        }
+    }
+
+    private File spool(InputStream input) throws IOException {
+        File file = File.createTempFile("excel-import", ".tmp");
+        try {
+            Files.copy(input, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return file;
+        } catch (IOException | RuntimeException e) {
+            file.delete();
+            throw e;
+        }
     }
 
     public static boolean isValid(Class beanClass) {
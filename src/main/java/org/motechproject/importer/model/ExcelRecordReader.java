@@ -0,0 +1,65 @@
+package org.motechproject.importer.model;
+
+import org.apache.poi.POIXMLDocument;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.NumberToTextConverter;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.SimpleDateFormat;
+
+/**
+ * Reads the rows of the first sheet of an Excel file as records, without building the object model of the workbook:
+ * .xls files are read record by record from the workbook stream, .xlsx files are pulled from the XML of the sheet.
+ * <p/>
+ * Cells become the text a CSV export of the sheet would have, so that they bind like CSV columns: numbers without
+ * a trailing .0 when they are whole, booleans as true or false, and date-formatted numbers in the date format of the
+ * importer. Formulas give their cached result. Cells without a value are empty columns.
+ */
+abstract class ExcelRecordReader implements RecordReader {
+
+    private static final double MAX_WHOLE_NUMBER = 1e15;
+
+    private final SimpleDateFormat dateFormat;
+    protected boolean date1904;
+
+    protected ExcelRecordReader(String dateFormat) {
+        this.dateFormat = new SimpleDateFormat(dateFormat);
+    }
+
+    static ExcelRecordReader open(File file, String dateFormat) throws Exception {
+        try (InputStream input = new BufferedInputStream(new FileInputStream(file))) {
+            if (POIFSFileSystem.hasPOIFSHeader(input)) {
+                return new XlsRecordReader(file, dateFormat);
+            }
+            if (POIXMLDocument.hasOOXMLHeader(input)) {
+                return new XlsxRecordReader(file, dateFormat);
+            }
+        }
+        throw new IllegalArgumentException(file.getName() + " is neither an .xls nor an .xlsx file");
+    }
+
+    protected String numberText(double value, int formatIndex, String formatString) {
+        if (DateUtil.isADateFormat(formatIndex, formatString) && DateUtil.isValidExcelDate(value)) {
+            return dateFormat.format(DateUtil.getJavaDate(value, date1904));
+        }
+        if (value == Math.rint(value) && Math.abs(value) < MAX_WHOLE_NUMBER) {
+            return Long.toString((long) value);
+        }
+        return NumberToTextConverter.toText(value);
+    }
+
+    //Appends the cell at the given column, with empty columns for the cells skipped before it.
+    protected static int appendCell(CsvRecord record, int nextColumn, int column, String text) {
+        for (; nextColumn < column; nextColumn++) {
+            record.endField();
+        }
+        record.append(text);
+        record.endField();
+        return nextColumn + 1;
+    }
+}
@@ -0,0 +1,107 @@
+package org.motechproject.importer.model;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.zip.CRC32;
+
+/**
+ * How far the import of a file got, kept next to the file in &lt;file&gt;.checkpoint: the byte offset and row number
+ * of the first record not yet posted, and a fingerprint of the bytes before it. The checkpoint is rewritten after
+ * every posted chunk, and deleted once every file of the import is imported.
+ * <p/>
+ * The fingerprint is a CRC32 of the imported part of the file only, so that an import stopped by an invalid record
+ * resumes after the rows in front of it are posted even when that record has since been corrected.
+ */
+class ImportCheckpoint {
+
+    private static final String EXTENSION = ".checkpoint";
+
+    private final File file;
+    private final File checkpointFile;
+    private final CRC32 fingerprint = new CRC32();
+    private long byteOffset;
+    private long rowNumber;
+
+    private ImportCheckpoint(File file) {
+        this.file = file;
+        this.checkpointFile = new File(file.getPath() + EXTENSION);
+    }
+
+    //The checkpoint of the last import of the file, or one at its start when there is none or the file has changed.
+    static ImportCheckpoint open(File file) throws IOException {
+        ImportCheckpoint checkpoint = new ImportCheckpoint(file);
+        if (!checkpoint.checkpointFile.exists()) {
+            return checkpoint;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream input = new FileInputStream(checkpoint.checkpointFile)) {
+            properties.load(input);
+        }
+        long byteOffset = Long.parseLong(properties.getProperty("byteOffset", "0"));
+        if (byteOffset <= file.length()) {
+            checkpoint.fingerprint(0, byteOffset);
+            if (Long.toHexString(checkpoint.fingerprint.getValue()).equals(properties.getProperty("fingerprint"))) {
+                checkpoint.byteOffset = byteOffset;
+                checkpoint.rowNumber = Long.parseLong(properties.getProperty("rowNumber", "0"));
+                return checkpoint;
+            }
+        }
+        checkpoint.fingerprint.reset();
+        return checkpoint;
+    }
+
+    long getByteOffset() {
+        return byteOffset;
+    }
+
+    long getRowNumber() {
+        return rowNumber;
+    }
+
+    //Records that everything before the given offset is posted, and syncs the checkpoint to disk.
+    void advance(long byteOffset, long rowNumber) throws IOException {
+        fingerprint(this.byteOffset, byteOffset);
+        this.byteOffset = byteOffset;
+        this.rowNumber = rowNumber;
+
+        Properties properties = new Properties();
+        properties.setProperty("file", file.getName());
+        properties.setProperty("byteOffset", String.valueOf(byteOffset));
+        properties.setProperty("rowNumber", String.valueOf(rowNumber));
+        properties.setProperty("fingerprint", Long.toHexString(fingerprint.getValue()));
+        File temporaryFile = new File(checkpointFile.getPath() + ".tmp");
+        try (FileOutputStream output = new FileOutputStream(temporaryFile)) {
+            properties.store(output, "Import checkpoint");
+            output.getFD().sync();
+        }
+        Files.move(temporaryFile.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static void delete(File file) {
+        new File(file.getPath() + EXTENSION).delete();
+    }
+
+    private void fingerprint(long from, long to) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            input.seek(from);
+            long remaining = to - from;
+            while (remaining > 0) {
+                int read = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    throw new IOException(file.getName() + " ended before the checkpointed offset " + to);
+                }
+                fingerprint.update(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+    }
+}
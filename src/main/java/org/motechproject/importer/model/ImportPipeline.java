@@ -0,0 +1,296 @@
+package org.motechproject.importer.model;
+
+import org.motechproject.importer.domain.ValidationResponse;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+
+/**
+ * Imports the chunks of a file in stages that overlap: reading and tokenizing records, binding them to beans,
+ * validating and posting them. Each stage but posting runs on its own thread and hands chunks to the next one
+ * through a bounded queue, so a slow stage holds back the ones in front of it and at most depth chunks wait between
+ * two stages. Posting runs on the importing thread, in file order.
+ * <p/>
+ * Chunk readers that do not hand out records separately are read and bound in the read stage.
+ */
+abstract class ImportPipeline {
+
+    private static final Chunk END = new Chunk(null, -1);
+
+    private final ChunkReader chunkReader;
+    private final BlockingQueue<Chunk> records;
+    private final BlockingQueue<Chunk> beans;
+    private final BlockingQueue<Chunk> validated;
+    private final Stage read = new Stage("read");
+    private final Stage bind = new Stage("bind");
+    private final Stage validate = new Stage("validate");
+    private final Stage post = new Stage("post");
+    private volatile Throwable failure;
+
+    ImportPipeline(ChunkReader chunkReader, int depth) {
+        this.chunkReader = chunkReader;
+        this.records = new ArrayBlockingQueue<>(depth);
+        this.beans = new ArrayBlockingQueue<>(depth);
+        this.validated = new ArrayBlockingQueue<>(depth);
+    }
+
+    //Called on the bind stage with each chunk of beans.
+    void parsed(List<Object> chunk) {
+    }
+
+    abstract ValidationResponse validate(List<Object> chunk) throws Exception;
+
+    //Posts a validated chunk; returns false to stop the import. The byte offset is the reader's after the chunk.
+    abstract boolean post(List<Object> chunk, ValidationResponse validationResponse, long byteOffset) throws Exception;
+
+    //Returns the number of chunks posted.
+    int run(String name) throws Exception {
+        ExecutorService stages = Executors.newFixedThreadPool(3, threadFactory(name));
+        int postedChunks = 0;
+        try {
+            stages.execute(reading());
+            stages.execute(stage(bind, records, beans));
+            stages.execute(stage(validate, beans, validated));
+
+            Chunk chunk;
+            while ((chunk = post.take(validated)) != END) {
+                long start = System.nanoTime();
+                boolean proceed = post(chunk.beans, chunk.validationResponse, chunk.byteOffset);
+                post.worked(start, chunk.size);
+                postedChunks++;
+                if (!proceed) {
+                    return postedChunks;
+                }
+            }
+        } finally {
+            stages.shutdownNow();
+            awaitTermination(stages);
+        }
+
+        //A stage that failed ended the chunks early, unless the import stopped before reaching them.
+        if (failure instanceof Exception) throw (Exception) failure;
+        if (failure instanceof Error) throw (Error) failure;
+        return postedChunks;
+    }
+
+    List<Stage> getStages() {
+        return asList(read, bind, validate, post);
+    }
+
+    private Runnable reading() {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Chunk chunk;
+                    do {
+                        long start = System.nanoTime();
+                        chunk = readChunk();
+                        read.worked(start, chunk.size);
+                        read.put(records, chunk);
+                    } while (chunk != END);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Throwable t) {
+                    fail(t, records);
+                }
+            }
+        };
+    }
+
+    private Chunk readChunk() throws Exception {
+        Chunk chunk;
+        if (chunkReader instanceof RecordChunkReader) {
+            List<CsvRecord> chunkRecords = ((RecordChunkReader) chunkReader).nextRecords();
+            chunk = chunkRecords == null ? END : new Chunk(chunkRecords, chunkRecords.size());
+        } else {
+            List<Object> chunkBeans = chunkReader.nextChunk();
+            chunk = chunkBeans == null ? END : new Chunk(null, chunkBeans.size());
+            chunk.beans = chunkBeans;
+        }
+        if (chunk != END && chunkReader instanceof ResumableChunkReader) {
+            chunk.byteOffset = ((ResumableChunkReader) chunkReader).byteOffset();
+        }
+        return chunk;
+    }
+
+    private Runnable stage(final Stage stage, final BlockingQueue<Chunk> input, final BlockingQueue<Chunk> output) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Chunk chunk;
+                    do {
+                        chunk = stage.take(input);
+                        if (chunk != END) {
+                            long start = System.nanoTime();
+                            if (stage == bind) {
+                                bind(chunk);
+                                parsed(chunk.beans);
+                            } else {
+                                chunk.validationResponse = validate(chunk.beans);
+                            }
+                            stage.worked(start, chunk.size);
+                        }
+                        stage.put(output, chunk);
+                    } while (chunk != END);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Throwable t) {
+                    fail(t, output);
+                }
+            }
+        };
+    }
+
+    private void bind(Chunk chunk) throws Exception {
+        if (chunk.records != null) {
+            chunk.beans = ((RecordChunkReader) chunkReader).bind(chunk.records);
+            chunk.records = null;
+        }
+    }
+
+    //Ends the stages after the failed one.
+    private void fail(Throwable t, BlockingQueue<Chunk> output) {
+        if (failure == null) {
+            failure = t;
+        }
+        try {
+            output.put(END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitTermination(ExecutorService stages) throws InterruptedException {
+        while (!stages.awaitTermination(1, TimeUnit.SECONDS)) {
+            stages.shutdownNow();
+        }
+    }
+
+    private static ThreadFactory threadFactory(final String name) {
+        return new ThreadFactory() {
+            private final String[] stageNames = {"read", "bind", "validate"};
+            private int stageNumber;
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "import-" + stageNames[stageNumber++ % stageNames.length] + "-" + name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    private static class Chunk {
+        List<CsvRecord> records;
+        List<Object> beans;
+        ValidationResponse validationResponse;
+        long byteOffset = -1;
+        final int size;
+
+        Chunk(List<CsvRecord> records, int size) {
+            this.records = records;
+            this.size = size;
+        }
+    }
+
+    /**
+     * What one stage did: the time it spent working, waiting for a chunk from the stage before it and waiting for
+     * room in the queue to the stage after it, and the depth of its input queue as it took each chunk. The stage
+     * that limits an import is the busiest one; the stages before it wait for output, the ones after it for input.
+     * Each stage is updated by its own thread only, and read once the pipeline has stopped.
+     */
+    static class Stage {
+        private final String name;
+        private int chunks;
+        private long records;
+        private long busyNanos;
+        private long inputWaitNanos;
+        private long outputWaitNanos;
+        private long queueDepthTotal;
+        private int maxQueueDepth;
+
+        Stage(String name) {
+            this.name = name;
+        }
+
+        private Chunk take(BlockingQueue<Chunk> input) throws InterruptedException {
+            int queueDepth = input.size();
+            long start = System.nanoTime();
+            Chunk chunk = input.take();
+            inputWaitNanos += System.nanoTime() - start;
+            if (chunk != END) {
+                queueDepthTotal += queueDepth;
+                maxQueueDepth = Math.max(maxQueueDepth, queueDepth);
+            }
+            return chunk;
+        }
+
+        private void put(BlockingQueue<Chunk> output, Chunk chunk) throws InterruptedException {
+            long start = System.nanoTime();
+            output.put(chunk);
+            outputWaitNanos += System.nanoTime() - start;
+        }
+
+        private void worked(long start, int size) {
+            busyNanos += System.nanoTime() - start;
+            if (size >= 0) {
+                chunks++;
+                records += size;
+            }
+        }
+
+        String getName() {
+            return name;
+        }
+
+        int getChunks() {
+            return chunks;
+        }
+
+        long getRecords() {
+            return records;
+        }
+
+        long getBusyNanos() {
+            return busyNanos;
+        }
+
+        long getInputWaitNanos() {
+            return inputWaitNanos;
+        }
+
+        long getOutputWaitNanos() {
+            return outputWaitNanos;
+        }
+
+        double getAverageQueueDepth() {
+            return chunks == 0 ? 0 : (double) queueDepthTotal / chunks;
+        }
+
+        int getMaxQueueDepth() {
+            return maxQueueDepth;
+        }
+
+        //Records per second of work, the throughput the stage would have if it never waited.
+        double getThroughput() {
+            return busyNanos == 0 ? 0 : records * 1e9 / busyNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d records in %d chunks, %.0f records/s, busy %d ms, waiting %d ms for input"
+                    + " and %d ms for output, input queue depth %.1f average %d max", name, records, chunks,
+                    getThroughput(), busyNanos / 1000000, inputWaitNanos / 1000000, outputWaitNanos / 1000000,
+                    getAverageQueueDepth(), maxQueueDepth);
+        }
+    }
+}
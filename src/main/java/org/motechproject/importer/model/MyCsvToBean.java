@@ -27,10 +27,12 @@ public class MyCsvToBean extends CsvToBean {
     }
 
     private boolean isValid(String[] line) {
-        String returnString = "";
         for (String s : line) {
-            returnString += s;
+            for (int i = 0; i < s.length(); i++) {
+                if (s.charAt(i) > ' ')
+                    return true;
+            }
         }
-        return returnString.trim().isEmpty() ? false : true;
+        return false;
     }
 }
@@ -0,0 +1,42 @@
+package org.motechproject.importer.model;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.UndeclaredThrowableException;
+
+/**
+ * Binds the records of one parse to new beans, with a {@link ColumnWriter} for each column of the file's header.
+ * Columns that are not mapped to a property are skipped. Not thread safe.
+ */
+class RecordBinder {
+
+    private final Class bean;
+    private final MethodHandle constructor;
+    private final ColumnWriter[] columnWriters;
+
+    RecordBinder(Class bean, MethodHandle constructor, ColumnWriter[] columnWriters) {
+        this.bean = bean;
+        this.constructor = constructor;
+        this.columnWriters = columnWriters;
+    }
+
+    Object bind(CsvRecord record) throws Exception {
+        if (constructor == null) {
+            throw new InstantiationException(bean.getName());
+        }
+        try {
+            Object instance = (Object) constructor.invokeExact();
+            char[] chars = record.chars();
+            for (int col = 0; col < record.size(); col++) {
+                ColumnWriter writer = columnWriters[col];
+                if (writer != null) {
+                    writer.write(instance, chars, record.start(col), record.end(col));
+                }
+            }
+            return instance;
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new UndeclaredThrowableException(t);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package org.motechproject.importer.model;
+
+import java.util.List;
+
+/**
+ * A chunk reader that can hand out the records of a chunk before binding them to beans, so that a pipelined import
+ * tokenizes the next chunk while the records of the last one are bound on another thread.
+ */
+interface RecordChunkReader extends ChunkReader {
+
+    //Returns null once there are no more records. The records are copies, which stay valid after the next read.
+    List<CsvRecord> nextRecords() throws Exception;
+
+    List<Object> bind(List<CsvRecord> records) throws Exception;
+}
@@ -0,0 +1,14 @@
+package org.motechproject.importer.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Reads the records of an import file one at a time into a reusable {@link CsvRecord}, the first record being the
+ * header.
+ */
+public interface RecordReader extends Closeable {
+
+    //Returns false once there are no more records.
+    boolean next(CsvRecord record) throws IOException;
+}
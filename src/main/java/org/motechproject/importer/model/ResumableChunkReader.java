@@ -0,0 +1,11 @@
+package org.motechproject.importer.model;
+
+/**
+ * A chunk reader that can tell where in its file the next chunk starts, so that an import can be checkpointed after
+ * each chunk and resumed from there.
+ */
+public interface ResumableChunkReader extends ChunkReader {
+
+    //The byte offset in the file of the first record after the last chunk read.
+    long byteOffset();
+}
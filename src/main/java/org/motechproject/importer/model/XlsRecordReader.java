@@ -0,0 +1,160 @@
+package org.motechproject.importer.model;
+
+import org.apache.poi.hssf.eventusermodel.FormatTrackingHSSFListener;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BoolErrRecord;
+import org.apache.poi.hssf.record.CellValueRecordInterface;
+import org.apache.poi.hssf.record.DateWindow1904Record;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.RecordFactoryInputStream;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.poifs.filesystem.NPOIFSFileSystem;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.FormulaError;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Reads the rows of the first sheet of an .xls file, pulling the BIFF records of the workbook stream one at a time
+ * the way HSSFEventFactory does, and keeping only the shared strings and cell formats of the workbook.
+ */
+class XlsRecordReader extends ExcelRecordReader {
+
+    private static final String[] WORKBOOK_ENTRY_NAMES = {"Workbook", "WORKBOOK", "BOOK", "Book"};
+
+    private final NPOIFSFileSystem fileSystem;
+    private final RecordFactoryInputStream records;
+    private final FormatTrackingHSSFListener formats = new FormatTrackingHSSFListener(null);
+    private SSTRecord sharedStrings;
+    private boolean inSheet;
+
+    //The cell read ahead of the row being read.
+    private int cellRow = -1;
+    private int cellColumn;
+    private String cellText;
+
+    XlsRecordReader(File file, String dateFormat) throws IOException {
+        super(dateFormat);
+        fileSystem = new NPOIFSFileSystem(file, true);
+        try {
+            records = new RecordFactoryInputStream(fileSystem.createDocumentInputStream(workbookEntryName()), false);
+            readWorkbookGlobals();
+            readCell();
+        } catch (IOException | RuntimeException e) {
+            fileSystem.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean next(CsvRecord record) throws IOException {
+        record.clear();
+        if (cellRow < 0) {
+            return false;
+        }
+        int row = cellRow;
+        int nextColumn = 0;
+        do {
+            nextColumn = appendCell(record, nextColumn, cellColumn, cellText);
+            readCell();
+        } while (cellRow == row);
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        fileSystem.close();
+    }
+
+    private String workbookEntryName() throws IOException {
+        for (String name : WORKBOOK_ENTRY_NAMES) {
+            if (fileSystem.getRoot().hasEntry(name)) {
+                return name;
+            }
+        }
+        throw new IOException("The file has no workbook stream");
+    }
+
+    //Reads up to the first worksheet.
+    private void readWorkbookGlobals() {
+        Record record;
+        while ((record = records.nextRecord()) != null) {
+            formats.processRecordInternally(record);
+            if (record instanceof SSTRecord) {
+                sharedStrings = (SSTRecord) record;
+            } else if (record instanceof DateWindow1904Record) {
+                date1904 = ((DateWindow1904Record) record).getWindowing() == 1;
+            } else if (record instanceof BOFRecord && ((BOFRecord) record).getType() == BOFRecord.TYPE_WORKSHEET) {
+                inSheet = true;
+                return;
+            }
+        }
+    }
+
+    //Reads the next cell with a value of the sheet, or sets cellRow to -1 at the end of the sheet.
+    private void readCell() {
+        cellRow = -1;
+        Record record;
+        while (inSheet && (record = records.nextRecord()) != null) {
+            if (record instanceof EOFRecord) {
+                inSheet = false;
+            } else if (record instanceof CellValueRecordInterface) {
+                String text = text(record);
+                if (text != null) {
+                    cellRow = ((CellValueRecordInterface) record).getRow();
+                    cellColumn = ((CellValueRecordInterface) record).getColumn();
+                    cellText = text;
+                    return;
+                }
+            }
+        }
+    }
+
+    private String text(Record record) {
+        if (record instanceof LabelSSTRecord) {
+            return sharedStrings.getString(((LabelSSTRecord) record).getSSTIndex()).getString();
+        }
+        if (record instanceof NumberRecord) {
+            NumberRecord number = (NumberRecord) record;
+            return numberText(number.getValue(), formats.getFormatIndex(number), formats.getFormatString(number));
+        }
+        if (record instanceof BoolErrRecord) {
+            BoolErrRecord boolErr = (BoolErrRecord) record;
+            return boolErr.isError() ? FormulaError.forInt(boolErr.getErrorValue()).getString() : String.valueOf(boolErr.getBooleanValue());
+        }
+        if (record instanceof FormulaRecord) {
+            return formulaText((FormulaRecord) record);
+        }
+        if (record instanceof LabelRecord) {
+            return ((LabelRecord) record).getValue();
+        }
+        return null;
+    }
+
+    private String formulaText(FormulaRecord formula) {
+        if (formula.hasCachedResultString()) {
+            Record record = records.nextRecord();
+            while (record != null && !(record instanceof StringRecord)) {
+                record = records.nextRecord();
+            }
+            return record != null ? ((StringRecord) record).getString() : "";
+        }
+        switch (formula.getCachedResultType()) {
+            case Cell.CELL_TYPE_STRING:
+                return "";
+            case Cell.CELL_TYPE_BOOLEAN:
+                return String.valueOf(formula.getCachedBooleanValue());
+            case Cell.CELL_TYPE_ERROR:
+                return FormulaError.forInt((byte) formula.getCachedErrorValue()).getString();
+            default:
+                return numberText(formula.getValue(), formats.getFormatIndex(formula), formats.getFormatString(formula));
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package org.motechproject.importer.model;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+
+/**
+ * Reads the rows of the first sheet of an .xlsx file, pulling them from the XML of the sheet with a streaming
+ * parser. Only the shared strings and the cell styles of the workbook are held in memory.
+ */
+class XlsxRecordReader extends ExcelRecordReader {
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private final OPCPackage excelPackage;
+    private ReadOnlySharedStringsTable sharedStrings;
+    private StylesTable styles;
+    private InputStream sheetData;
+    private XMLStreamReader sheet;
+
+    XlsxRecordReader(File file, String dateFormat) throws Exception {
+        super(dateFormat);
+        excelPackage = OPCPackage.open(file, PackageAccess.READ);
+        try {
+            XSSFReader reader = new XSSFReader(excelPackage);
+            sharedStrings = new ReadOnlySharedStringsTable(excelPackage);
+            styles = reader.getStylesTable();
+            date1904 = isDate1904(reader.getWorkbookData());
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (sheets.hasNext()) {
+                sheetData = sheets.next();
+                sheet = XML_INPUT_FACTORY.createXMLStreamReader(sheetData);
+            }
+        } catch (Exception e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean next(CsvRecord record) throws IOException {
+        record.clear();
+        try {
+            if (sheet == null || !nextElement("row", "sheetData")) {
+                return false;
+            }
+            int nextColumn = 0;
+            while (nextElement("c", "row")) {
+                int column = columnIndex(sheet.getAttributeValue(null, "r"), nextColumn);
+                String text = cellText(sheet.getAttributeValue(null, "t"), sheet.getAttributeValue(null, "s"));
+                if (text != null) {
+                    nextColumn = appendCell(record, nextColumn, column, text);
+                }
+            }
+            return true;
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (sheet != null) {
+                sheet.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            if (sheetData != null) {
+                sheetData.close();
+            }
+            excelPackage.revert();
+        }
+    }
+
+    //Moves to the next start of the given element, or returns false at the end of the enclosing one.
+    private boolean nextElement(String name, String enclosingName) throws XMLStreamException {
+        while (sheet.hasNext()) {
+            int event = sheet.next();
+            if (event == START_ELEMENT && name.equals(sheet.getLocalName())) {
+                return true;
+            }
+            if (event == END_ELEMENT && enclosingName.equals(sheet.getLocalName())) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    //Reads the cell the sheet is at up to its end, returns null when it has no value.
+    private String cellText(String type, String style) throws XMLStreamException {
+        String value = null;
+        StringBuilder inlineString = null;
+        int depth = 1;
+        while (depth > 0) {
+            int event = sheet.next();
+            if (event == START_ELEMENT) {
+                depth++;
+                String name = sheet.getLocalName();
+                if ("v".equals(name)) {
+                    value = sheet.getElementText();
+                    depth--;
+                } else if ("is".equals(name)) {
+                    inlineString = new StringBuilder();
+                } else if ("t".equals(name) && inlineString != null) {
+                    inlineString.append(sheet.getElementText());
+                    depth--;
+                } else if ("rPh".equals(name)) {
+                    skipElement();
+                    depth--;
+                }
+            } else if (event == END_ELEMENT) {
+                depth--;
+            }
+        }
+
+        if (inlineString != null) return inlineString.toString();
+        if (value == null) return null;
+        if ("s".equals(type)) return sharedStrings.getEntryAt(Integer.parseInt(value));
+        if ("b".equals(type)) return String.valueOf("1".equals(value));
+        if ("str".equals(type) || "e".equals(type) || "inlineStr".equals(type) || "d".equals(type)) return value;
+        if (value.isEmpty()) return null;
+
+        int formatIndex = 0;
+        String formatString = null;
+        if (style != null) {
+            XSSFCellStyle cellStyle = styles.getStyleAt(Integer.parseInt(style));
+            formatIndex = cellStyle.getDataFormat();
+            formatString = cellStyle.getDataFormatString();
+        }
+        return numberText(Double.parseDouble(value), formatIndex, formatString);
+    }
+
+    private void skipElement() throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = sheet.next();
+            if (event == START_ELEMENT) {
+                depth++;
+            } else if (event == END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    //The column of a cell reference like "AB12", or the next column when the cell has no reference.
+    private static int columnIndex(String reference, int nextColumn) {
+        if (reference == null) {
+            return nextColumn;
+        }
+        int column = 0;
+        for (int i = 0; i < reference.length() && Character.isLetter(reference.charAt(i)); i++) {
+            column = column * 26 + (Character.toUpperCase(reference.charAt(i)) - 'A' + 1);
+        }
+        return column - 1;
+    }
+
+    private static boolean isDate1904(InputStream workbookData) throws XMLStreamException, IOException {
+        try (InputStream input = workbookData) {
+            XMLStreamReader workbook = XML_INPUT_FACTORY.createXMLStreamReader(input);
+            try {
+                while (workbook.hasNext()) {
+                    if (workbook.next() == START_ELEMENT) {
+                        String name = workbook.getLocalName();
+                        if ("workbookPr".equals(name)) {
+                            String date1904 = workbook.getAttributeValue(null, "date1904");
+                            return "1".equals(date1904) || "true".equals(date1904);
+                        }
+                        if ("sheets".equals(name)) {
+                            return false;
+                        }
+                    }
+                }
+                return false;
+            } finally {
+                workbook.close();
+            }
+        }
+    }
+}
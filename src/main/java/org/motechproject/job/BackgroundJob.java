@@ -0,0 +1,61 @@
+package org.motechproject.job;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A job run in the background by {@link BackgroundJobs}. It is queued until a thread picks it up, and completes or
+ * fails once it has run. Finished jobs are kept for the retention time of the BackgroundJobs that ran them.
+ */
+public abstract class BackgroundJob {
+
+    public enum Status {QUEUED, RUNNING, COMPLETED, FAILED}
+
+    private final String id;
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private volatile Status status = Status.QUEUED;
+    private volatile long finishedAt;
+
+    protected BackgroundJob(String id) {
+        this.id = id;
+    }
+
+    protected void started() {
+        status = Status.RUNNING;
+    }
+
+    protected void finished(boolean successful) {
+        finishedAt = System.currentTimeMillis();
+        status = successful ? Status.COMPLETED : Status.FAILED;
+        finished.countDown();
+    }
+
+    //Called with what stopped the job from running, before it is finished as failed.
+    protected void failed(Throwable failure) {
+    }
+
+    //Called once the job is no longer kept.
+    protected void expired() {
+    }
+
+    //Returns false if the job is still queued or running after the timeout.
+    public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+        return finished.await(timeout, unit);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+
+    long getFinishedAt() {
+        return finishedAt;
+    }
+}
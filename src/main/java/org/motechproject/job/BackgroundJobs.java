@@ -0,0 +1,92 @@
+package org.motechproject.job;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The jobs submitted to a service that runs them in the background. Jobs are run by the executors the service
+ * hands them to, and are kept until the retention time after they finish; expired jobs are removed as later jobs
+ * are submitted or looked up.
+ */
+public class BackgroundJobs<J extends BackgroundJob> {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final long retentionMillis;
+    private final Map<String, J> jobs = new ConcurrentHashMap<>();
+
+    public BackgroundJobs(long retentionMillis) {
+        this.retentionMillis = retentionMillis;
+    }
+
+    //A job the executor rejects is not kept, and the RejectedExecutionException is thrown.
+    public J submit(final J job, Executor executor, final Task task) {
+        removeExpiredJobs();
+        jobs.put(job.getId(), job);
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    job.started();
+                    boolean successful = false;
+                    try {
+                        successful = task.run();
+                    } catch (Exception | Error e) {
+                        logger.error(job + " failed: " + e.getMessage());
+                        job.failed(e);
+                    } finally {
+                        job.finished(successful);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            throw e;
+        }
+        return job;
+    }
+
+    //Returns null for a job that is unknown or has expired.
+    public J get(String id) {
+        removeExpiredJobs();
+        return jobs.get(id);
+    }
+
+    private void removeExpiredJobs() {
+        long expiredBefore = System.currentTimeMillis() - retentionMillis;
+        for (Iterator<J> iterator = jobs.values().iterator(); iterator.hasNext(); ) {
+            J job = iterator.next();
+            if (job.isFinished() && job.getFinishedAt() <= expiredBefore) {
+                iterator.remove();
+                job.expired();
+            }
+        }
+    }
+
+    //Daemon threads, numbered after the given name.
+    public static ThreadFactory threadFactory(final String name) {
+        return new ThreadFactory() {
+            private final AtomicInteger threadNumber = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name + "-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    public interface Task {
+        //Runs the job, returning whether it succeeded.
+        boolean run() throws Exception;
+    }
+}
@@ -16,6 +16,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
 import static junit.framework.Assert.assertEquals;
 import static org.mockito.Mockito.when;
@@ -65,4 +66,24 @@ public class CSVBuilderTest {
         assertEquals(expectedString, fileContents);
         FileUtils.deleteQuietly(new File("SampleData-report.csv"));
     }
+
+    @Test
+    public void shouldWriteAGzippedCSVFile() throws IOException {
+        String reportName = "csv_report";
+        List<String> columnHeaders = Arrays.asList("Header1", "Header2");
+        List<List<String>> allRowData = Arrays.asList(Arrays.asList("Flw1", "Location1"), Arrays.asList("Flw2", "Location2"));
+        Map<String, String> criteria = new HashMap<String, String>();
+        when(excelExportProcessor.getEntirExcelData(reportName, criteria)).thenReturn(new ExportData(columnHeaders, allRowData));
+        when(excelExportProcessor.name()).thenReturn("SampleData");
+
+        CSVBuilder CSVBuilder = new CSVBuilder(null, reportName, excelExportProcessor, criteria, true);
+        File file = CSVBuilder.build();
+
+        GZIPInputStream inputStream = new GZIPInputStream(new FileInputStream(file));
+        String fileContents = IOUtils.toString(inputStream);
+        inputStream.close();
+        assertEquals("SampleData-report.csv.gz", file.getName());
+        assertEquals("Header1,Header2\nFlw1,Location1\nFlw2,Location2\n", fileContents);
+        FileUtils.deleteQuietly(file);
+    }
 }
@@ -1,11 +1,26 @@
 package org.motechproject.export.builder.excel;
 
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.junit.Test;
+import org.motechproject.export.annotation.DataProvider;
+import org.motechproject.export.annotation.ExcelDataSource;
+import org.motechproject.export.builder.excel.model.ExcelEngine;
+import org.motechproject.export.builder.excel.model.Workbook;
 import org.motechproject.export.model.ExcelExportProcessor;
+import org.motechproject.export.service.sample.SampleData;
 import org.motechproject.export.service.sample.SampleExcelDataSource;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 public class PagedExcelBuilderTest {
 
@@ -28,6 +43,58 @@ public class PagedExcelBuilderTest {
         assertDataInSecondPageAdded(workbook);
     }
 
+    @Test
+    public void shouldStreamPagedRowDataIntoAnXlsxWorkbook() throws IOException {
+        Workbook workbook = new PagedExcelBuilder(new ExcelExportProcessor(new SampleExcelDataSource()), "sampleExcel", ExcelEngine.SXSSF).buildWorkbook();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        workbook.write(outputStream);
+        workbook.dispose();
+
+        Sheet sheet = new XSSFWorkbook(new ByteArrayInputStream(outputStream.toByteArray())).getSheetAt(0);
+        assertEquals("Sample Excel", sheet.getRow(0).getCell(0).getStringCellValue());
+        assertEquals("Id", sheet.getRow(1).getCell(0).getStringCellValue());
+        assertEquals("id1", sheet.getRow(2).getCell(0).getStringCellValue());
+        assertEquals("id3", sheet.getRow(4).getCell(0).getStringCellValue());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldNotBuildAnInMemoryWorkbookForTheStreamingEngine() {
+        new PagedExcelBuilder(new ExcelExportProcessor(new SampleExcelDataSource()), "sampleExcel", ExcelEngine.SXSSF).build();
+    }
+
+    @Test
+    public void shouldDisposeAStreamedWorkbookThatFailsPartWay() {
+        int sheetFiles = sxssfSheetFiles();
+        try {
+            new PagedExcelBuilder(new ExcelExportProcessor(new FailingExcelDataSource()), "failingExcel", ExcelEngine.SXSSF).buildWorkbook();
+            fail();
+        } catch (RuntimeException expected) {
+        }
+        assertEquals(sheetFiles, sxssfSheetFiles());
+    }
+
+    private int sxssfSheetFiles() {
+        String[] files = new File(System.getProperty("java.io.tmpdir")).list();
+        int sheetFiles = 0;
+        for (int i = 0; files != null && i < files.length; i++) {
+            if (files[i].startsWith("poi-sxssf-sheet")) {
+                sheetFiles++;
+            }
+        }
+        return sheetFiles;
+    }
+
+    @ExcelDataSource(name = "failingExcel")
+    public static class FailingExcelDataSource {
+        @DataProvider
+        public List<SampleData> failingExcel(int pageNumber) {
+            if (pageNumber == 2) {
+                throw new IllegalStateException("data source is down");
+            }
+            return asList(new SampleData("id" + pageNumber));
+        }
+    }
+
     private void assertDataInFirstPageAdded(HSSFWorkbook workbook) {
         assertEquals("id1", workbook.getSheetAt(0).getRow(2).getCell(0).getStringCellValue());
         assertEquals("id2", workbook.getSheetAt(0).getRow(3).getCell(0).getStringCellValue());
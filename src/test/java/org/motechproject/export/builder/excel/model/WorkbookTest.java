@@ -3,6 +3,7 @@ package org.motechproject.export.builder.excel.model;
 import org.junit.Test;
 
 import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
 public class WorkbookTest {
@@ -25,4 +26,28 @@ public class WorkbookTest {
         workbook.addRow(asList("test"));
         assertNotNull(workbook.book().getSheetAt(1));
     }
+
+    @Test
+    public void shouldKeepAddingRowsToTheSameSheetBeyondTheXlsLimitWhenStreaming() {
+        Workbook workbook = new Workbook("Test", asList("Column"), ExcelEngine.SXSSF);
+        for (int i = 0; i <= Worksheet.MAX_ROW_INDEX; i++) {
+            workbook.addRow(asList("test"));
+        }
+        assertEquals(1, workbook.book().getNumberOfSheets());
+        workbook.dispose();
+    }
+
+    @Test
+    public void shouldReuseTheSameCellStylesOnEveryNewSheet() {
+        Workbook workbook = new Workbook("Test", asList("Column"));
+        int cellStylesOfFirstSheet = workbook.book().getNumCellStyles();
+
+        int rowsPerSheet = Worksheet.MAX_ROW_INDEX - Worksheet.HEADER_ROW_COUNT + 1;
+        for (int i = 0; i < 2 * rowsPerSheet + 1; i++) {
+            workbook.addRow(asList("test"));
+        }
+
+        assertEquals(3, workbook.book().getNumberOfSheets());
+        assertEquals(cellStylesOfFirstSheet, workbook.book().getNumCellStyles());
+    }
 }
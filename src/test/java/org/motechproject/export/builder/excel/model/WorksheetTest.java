@@ -2,8 +2,14 @@ package org.motechproject.export.builder.excel.model;
 
 
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
 import org.junit.Test;
 
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Date;
+
 import static java.util.Arrays.asList;
 import static org.junit.Assert.*;
 
@@ -29,6 +35,35 @@ public class WorksheetTest {
         assertNull(worksheet.sheet.getRow(Worksheet.MAX_ROW_INDEX + 1));
     }
 
+    @Test
+    public void shouldWriteNumbersDatesAndBooleansAsTypedCells() {
+        Worksheet worksheet = new Worksheet(new HSSFWorkbook(), "sheet", "Test", asList("A", "B", "C", "D", "E", "F"));
+        Date date = new Date(0);
+
+        worksheet.addRow(Arrays.<Object>asList(42, 2.5, date, true, "text", null));
+
+        Row row = worksheet.sheet.getRow(Worksheet.HEADER_ROW_COUNT);
+        assertEquals(Cell.CELL_TYPE_NUMERIC, row.getCell(0).getCellType());
+        assertEquals(42.0, row.getCell(0).getNumericCellValue(), 0);
+        assertEquals(2.5, row.getCell(1).getNumericCellValue(), 0);
+        assertEquals(date, row.getCell(2).getDateCellValue());
+        assertEquals(CellStyleRegistry.DATE_FORMAT, row.getCell(2).getCellStyle().getDataFormatString());
+        assertEquals(Cell.CELL_TYPE_BOOLEAN, row.getCell(3).getCellType());
+        assertEquals("text", row.getCell(4).getStringCellValue());
+        assertNull(row.getCell(5));
+    }
+
+    @Test
+    public void shouldWriteNumbersExcelCannotHoldExactlyAsText() {
+        Worksheet worksheet = new Worksheet(new HSSFWorkbook(), "sheet", "Test", asList("A", "B"));
+
+        worksheet.addRow(Arrays.<Object>asList(Long.MAX_VALUE, new BigDecimal("0.12345678901234567890")));
+
+        Row row = worksheet.sheet.getRow(Worksheet.HEADER_ROW_COUNT);
+        assertEquals(String.valueOf(Long.MAX_VALUE), row.getCell(0).getStringCellValue());
+        assertEquals("0.12345678901234567890", row.getCell(1).getStringCellValue());
+    }
+
     private int maxDataRowIndex() {
         return Worksheet.MAX_ROW_INDEX - Worksheet.HEADER_ROW_COUNT;
     }
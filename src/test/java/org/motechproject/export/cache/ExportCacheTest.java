@@ -0,0 +1,142 @@
+package org.motechproject.export.cache;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ExportCacheTest {
+
+    private File spillDirectory;
+    private ExportCache exportCache;
+
+    @Before
+    public void setUp() throws IOException {
+        spillDirectory = File.createTempFile("export-cache", "");
+        spillDirectory.delete();
+        exportCache = new ExportCache(10, 20, spillDirectory);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        exportCache.invalidateAll();
+        FileUtils.deleteDirectory(spillDirectory);
+    }
+
+    @Test
+    public void shouldReturnTheCapturedOutputUntilItExpires() throws IOException {
+        ExportCache.Key key = new ExportCache.Key("dataSource", "report", "csv", "parameters");
+        StringWriter target = new StringWriter();
+        ExportCache.Capture capture = exportCache.capture();
+        Writer writer = capture.tee(target);
+        writer.write("a,b\n1,2\n");
+        writer.close();
+        exportCache.put(key, capture, 60000, exportCache.generation(key));
+
+        assertEquals("a,b\n1,2\n", target.toString());
+        assertEquals("a,b\n1,2\n", IOUtils.toString(exportCache.get(new ExportCache.Key("dataSource", "report", "csv", "parameters")), "UTF-8"));
+        assertNull(exportCache.get(new ExportCache.Key("dataSource", "report", "csv", "other parameters")));
+
+        put(key, "expired", 0);
+        assertNull(exportCache.get(key));
+        assertEquals(0, exportCache.size());
+    }
+
+    @Test
+    public void shouldSpillTheLeastRecentlyUsedOutputToDiskAndThenDropIt() throws IOException {
+        ExportCache.Key first = new ExportCache.Key("dataSource", "first", "csv", null);
+        ExportCache.Key second = new ExportCache.Key("dataSource", "second", "csv", null);
+        ExportCache.Key third = new ExportCache.Key("dataSource", "third", "csv", null);
+        put(first, "12345678", 60000);
+        put(second, "abcdefgh", 60000);
+
+        assertEquals(8, exportCache.getMemoryUsed());
+        assertEquals(8, exportCache.getDiskUsed());
+        assertEquals(1, spillDirectory.list().length);
+        assertEquals("12345678", IOUtils.toString(exportCache.get(first), "UTF-8"));
+
+        put(third, "ABCDEFGH", 60000);
+        assertEquals(3, exportCache.size());
+        put(third, "ABCDEFGHIJKL", 60000);
+
+        assertNull(exportCache.get(second));
+        assertEquals("12345678", IOUtils.toString(exportCache.get(first), "UTF-8"));
+        assertEquals("ABCDEFGHIJKL", IOUtils.toString(exportCache.get(third), "UTF-8"));
+        assertEquals(20, exportCache.getDiskUsed());
+    }
+
+    @Test
+    public void shouldNotCacheOutputLargerThanTheDiskBudget() throws IOException {
+        ExportCache.Key key = new ExportCache.Key("dataSource", "report", "xls", null);
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        ExportCache.Capture capture = exportCache.capture();
+        capture.tee(target).write(new byte[25]);
+        exportCache.put(key, capture, 60000, exportCache.generation(key));
+
+        assertEquals(25, target.size());
+        assertNull(exportCache.get(key));
+        assertEquals(0, exportCache.getDiskUsed());
+    }
+
+    @Test
+    public void shouldInvalidateTheOutputOfADataSource() throws IOException {
+        put(new ExportCache.Key("dataSource", "first", "csv", null), "first", 60000);
+        put(new ExportCache.Key("dataSource", "second", "csv", null), "second", 60000);
+        ExportCache.Key other = new ExportCache.Key("otherDataSource", "report", "csv", null);
+        put(other, "other", 60000);
+
+        exportCache.invalidate("dataSource");
+
+        assertEquals(1, exportCache.size());
+        assertEquals("other", IOUtils.toString(exportCache.get(other), "UTF-8"));
+    }
+
+    @Test
+    public void shouldNotCacheOutputRenderedBeforeItsDataSourceWasInvalidated() throws IOException {
+        ExportCache.Key key = new ExportCache.Key("dataSource", "report", "csv", null);
+        long generation = exportCache.generation(key);
+        ExportCache.Capture capture = exportCache.capture();
+        Writer writer = capture.tee(new StringWriter());
+        writer.write("stale");
+        exportCache.invalidate("dataSource");
+        writer.close();
+        exportCache.put(key, capture, 60000, generation);
+
+        assertNull(exportCache.get(key));
+        assertEquals(0, exportCache.getCaptureMemoryUsed());
+    }
+
+    @Test
+    public void shouldCaptureToDiskOnceTheCapturesInFlightFillTheMemoryBudget() throws IOException {
+        ExportCache.Capture first = exportCache.capture();
+        first.tee(new ByteArrayOutputStream()).write(new byte[6]);
+        ExportCache.Capture second = exportCache.capture();
+        second.tee(new ByteArrayOutputStream()).write(new byte[6]);
+
+        assertEquals(6, exportCache.getCaptureMemoryUsed());
+        assertEquals(1, spillDirectory.list().length);
+
+        first.discard();
+        second.discard();
+        assertEquals(0, exportCache.getCaptureMemoryUsed());
+        assertEquals(0, spillDirectory.list().length);
+    }
+
+    private void put(ExportCache.Key key, String content, long ttlMillis) throws IOException {
+        ExportCache.Capture capture = exportCache.capture();
+        Writer writer = capture.tee(new StringWriter());
+        writer.write(content);
+        writer.close();
+        exportCache.put(key, capture, ttlMillis, exportCache.generation(key));
+    }
+}
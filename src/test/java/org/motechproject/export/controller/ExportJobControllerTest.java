@@ -0,0 +1,92 @@
+package org.motechproject.export.controller;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.motechproject.export.service.ExportJob;
+import org.motechproject.export.builder.excel.model.ExcelEngine;
+import org.motechproject.export.service.ExportJobService;
+import org.motechproject.export.service.ExportService;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ExportJobControllerTest {
+
+    @Mock
+    private ExportJobService exportJobService;
+    @Mock
+    private ExportService exportService;
+    @Mock
+    private HttpServletResponse response;
+    @InjectMocks
+    private ExportJobController exportJobController = new ExportJobController();
+
+    @Test
+    public void shouldWriteTheJobAsValidJSON() throws Exception {
+        ExportJob exportJob = mock(ExportJob.class);
+        when(exportJob.getId()).thenReturn("job1");
+        when(exportJob.getStatus()).thenReturn(ExportJob.Status.FAILED);
+        when(exportJob.getFileName()).thenReturn("children's report / x.csv");
+        when(exportJob.getFailure()).thenReturn(new IllegalStateException("Can't read \"rows\"\\\n"));
+        when(exportJobService.getJob("job1")).thenReturn(exportJob);
+        StringWriter json = new StringWriter();
+        when(response.getWriter()).thenReturn(new PrintWriter(json));
+
+        exportJobController.getJob("job1", response);
+
+        assertEquals("{\"id\":\"job1\",\"status\":\"FAILED\",\"fileName\":\"children's report / x.csv\",\"rowsWritten\":0,\"bytesWritten\":0,"
+                + "\"failure\":\"java.lang.IllegalStateException: Can't read \\\"rows\\\"\\\\\\n\"}", json.toString());
+    }
+
+    @Test
+    public void shouldSubmitAnExcelReportWithTheEngineOfTheReport() throws Exception {
+        ExportJob exportJob = mock(ExportJob.class);
+        when(exportJob.getFileName()).thenReturn("report.xlsx");
+        when(exportService.excelEngine("group", "report")).thenReturn(ExcelEngine.SXSSF);
+        when(exportJobService.submitExcel("group", "report", ExcelEngine.SXSSF)).thenReturn(exportJob);
+        when(response.getWriter()).thenReturn(new PrintWriter(new StringWriter()));
+
+        exportJobController.submitExcelReport("group", "report", response);
+
+        verify(exportJobService).submitExcel("group", "report", ExcelEngine.SXSSF);
+    }
+
+    @Test
+    public void shouldSetTheContentLengthOfAResultLargerThan2GB() throws Exception {
+        File result = mock(File.class);
+        when(result.length()).thenReturn(3L * 1024 * 1024 * 1024);
+        File empty = File.createTempFile("export-job", ".xlsx");
+        empty.deleteOnExit();
+        when(result.toPath()).thenReturn(empty.toPath());
+        ExportJob exportJob = mock(ExportJob.class);
+        when(exportJob.getResult()).thenReturn(result);
+        when(exportJob.getContentType()).thenReturn(ExcelEngine.SXSSF.contentType());
+        when(exportJobService.getJob("job1")).thenReturn(exportJob);
+        when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        });
+
+        exportJobController.getResult("job1", null, response);
+
+        verify(response).setHeader(ExportJobController.CONTENT_LENGTH, "3221225472");
+    }
+
+    @Test
+    public void shouldEscapeControlCharactersInJSONStrings() {
+        assertEquals("a\\tb\\u0001", ExportJobController.jsonEscape("a\tb\u0001"));
+    }
+}
@@ -1,9 +1,16 @@
 package org.motechproject.export.model;
 
 import org.junit.Test;
+import org.motechproject.export.annotation.CSVDataSource;
+import org.motechproject.export.annotation.DataProvider;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
+import static java.util.Arrays.asList;
 import static junit.framework.Assert.assertEquals;
 
 public class CSVExportProcessorTest {
@@ -17,6 +24,84 @@ public class CSVExportProcessorTest {
         assertEquals("district",columnHeaders.get(0));
         assertEquals("panchy",columnHeaders.get(1));
     }
+
+    @Test
+    public void shouldHandEachRowToTheRowHandlerBeforeFetchingTheNextRecord() {
+        final RecordingRowHandler rowHandler = new RecordingRowHandler();
+        final LazyCSVDataSource dataSource = new LazyCSVDataSource(rowHandler);
+
+        new CSVExportProcessor(dataSource).streamCSVData(null, rowHandler);
+
+        assertEquals(asList("district", "panchy"), rowHandler.columnHeaders);
+        assertEquals(3, rowHandler.rows.size());
+        assertEquals(3, dataSource.recordsServed);
+    }
+
+    @Test
+    public void shouldCopyRecordsThatAreNotAListIntoTheData() {
+        List<Object> data = new CSVExportProcessor(new SetCSVDataSource()).data(null);
+
+        assertEquals(2, data.size());
+        assertEquals("first", data.get(0));
+    }
+
+    @CSVDataSource(name = "set")
+    public static class SetCSVDataSource {
+        @DataProvider
+        public Set<String> records() {
+            return new LinkedHashSet<>(asList("first", "second"));
+        }
+    }
+
+    @CSVDataSource(name = "lazy")
+    public static class LazyCSVDataSource {
+        private final RecordingRowHandler rowHandler;
+        int recordsServed;
+
+        LazyCSVDataSource(RecordingRowHandler rowHandler) {
+            this.rowHandler = rowHandler;
+        }
+
+        @DataProvider
+        public Iterable<DummyCsv> records() {
+            return new Iterable<DummyCsv>() {
+                @Override
+                public Iterator<DummyCsv> iterator() {
+                    return new Iterator<DummyCsv>() {
+                        @Override
+                        public boolean hasNext() {
+                            return recordsServed < 3;
+                        }
+
+                        @Override
+                        public DummyCsv next() {
+                            assertEquals(recordsServed, rowHandler.rows.size());
+                            recordsServed++;
+                            return new DummyCsv();
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+            };
+        }
+    }
 }
 
+class RecordingRowHandler implements ExportRowHandler {
+    List<String> columnHeaders;
+    List<List<String>> rows = new ArrayList<>();
+
+    @Override
+    public void columnHeaders(List<String> columnHeaders) {
+        this.columnHeaders = columnHeaders;
+    }
 
+    @Override
+    public void row(List<?> rowValues) {
+        rows.add(ExportDataModel.rowText(rowValues));
+    }
+}
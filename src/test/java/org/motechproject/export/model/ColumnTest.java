@@ -0,0 +1,56 @@
+package org.motechproject.export.model;
+
+import org.junit.Test;
+import org.motechproject.export.annotation.ExportValue;
+
+import static junit.framework.Assert.assertEquals;
+
+public class ColumnTest {
+
+    @Test
+    public void shouldReadTheValueThroughTheAnnotatedMethod() throws NoSuchMethodException {
+        Column column = new Column(ColumnModel.class.getMethod("getCount"));
+        assertEquals("42", column.value(new ColumnModel()));
+    }
+
+    @Test
+    public void shouldReadTheValueOfAMethodDeclaredOnANonPublicClass() throws NoSuchMethodException {
+        Column column = new Column(ColumnModel.class.getMethod("getName"));
+        assertEquals("name", column.value(new ColumnModel()));
+    }
+
+    @Test
+    public void shouldReturnEmptyValueWhenTheMethodReturnsNull() throws NoSuchMethodException {
+        Column column = new Column(ColumnModel.class.getMethod("getNothing"));
+        assertEquals("", column.value(new ColumnModel()));
+    }
+
+    @Test
+    public void shouldReturnEmptyValueWhenTheMethodThrows() throws NoSuchMethodException {
+        Column column = new Column(ColumnModel.class.getMethod("getFailure"));
+        assertEquals("", column.value(new ColumnModel()));
+    }
+}
+
+class ColumnModel {
+
+    @ExportValue(index = 0)
+    public int getCount() {
+        return 42;
+    }
+
+    @ExportValue(index = 1)
+    public String getName() {
+        return "name";
+    }
+
+    @ExportValue(index = 2)
+    public String getNothing() {
+        return null;
+    }
+
+    @ExportValue(index = 3)
+    public String getFailure() {
+        throw new IllegalStateException();
+    }
+}
@@ -7,6 +7,7 @@ import org.motechproject.export.annotation.ExcelDataSource;
 import org.motechproject.export.service.sample.SampleData;
 import org.motechproject.export.service.sample.SampleExcelDataSource;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -109,6 +110,47 @@ public class ExcelExportProcessorTest {
         assertTrue(allRowData.get(0).contains("true"));
     }
 
+    @Test
+    public void shouldPrefetchPagesOnAWorkerThreadAndKeepThemInOrder() {
+        PrefetchedPagedReportDataSource dataSource = new PrefetchedPagedReportDataSource();
+        ExportData export = new ExcelExportProcessor(dataSource).getPaginatedExcelData("sampleExcel");
+
+        List<List<String>> allRowData = export.getAllRowData();
+        assertEquals(3, allRowData.size());
+        assertEquals("id1", allRowData.get(0).get(0));
+        assertEquals("id2", allRowData.get(1).get(0));
+        assertEquals("id3", allRowData.get(2).get(0));
+        assertFalse(dataSource.fetchingThreads.contains(Thread.currentThread()));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void shouldRethrowAFailureOfThePrefetchedDataSource() {
+        new ExcelExportProcessor(new FailingPrefetchedReportDataSource()).getPaginatedExcelData("sampleExcel");
+    }
+}
+
+@ExcelDataSource(name = "prefetchedPagedReportDataSource", prefetchPages = 2)
+class PrefetchedPagedReportDataSource {
+    List<Thread> fetchingThreads = new ArrayList<>();
+
+    @DataProvider
+    public List<SampleData> sampleExcel(int pageNumber) {
+        fetchingThreads.add(Thread.currentThread());
+        if (pageNumber > 3)
+            return null;
+        return asList(new SampleData("id" + pageNumber));
+    }
+}
+
+@ExcelDataSource(name = "failingPrefetchedReportDataSource", prefetchPages = 1)
+class FailingPrefetchedReportDataSource {
+
+    @DataProvider
+    public List<SampleData> sampleExcel(int pageNumber) {
+        if (pageNumber == 2)
+            throw new IllegalStateException("data source is down");
+        return asList(new SampleData("id" + pageNumber));
+    }
 }
 
 @ExcelDataSource(name = "validReportDataSource")
@@ -4,7 +4,9 @@ import org.junit.Test;
 
 import java.util.List;
 
+import static java.util.Arrays.asList;
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
 
 /**
  * Created with IntelliJ IDEA.
@@ -20,5 +22,11 @@ public class ExportDataModelTest {
         List<String> columnHeaders = new ExportDataModel(DummyCsv.class).columnHeaders();
         assertEquals(2,columnHeaders.size());
     }
+
+    @Test
+    public void shouldResolveTheModelOfATypeOnlyOnce(){
+        assertSame(ExportDataModel.forType(DummyCsv.class), ExportDataModel.forType(DummyCsv.class));
+        assertEquals(asList("district", "panchy"), ExportDataModel.forType(DummyCsv.class).columnHeaders());
+    }
 }
 
@@ -0,0 +1,76 @@
+package org.motechproject.export.model;
+
+import org.junit.Test;
+import org.motechproject.export.annotation.ExportValue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+
+public class RowFormatterTest {
+
+    @Test
+    public void shouldFormatLargeBatchesInParallelAndKeepTheRecordOrder() {
+        List<FormattedRecord> records = records(5000);
+        RecordingRowHandler rowHandler = new RecordingRowHandler();
+
+        new RowFormatter(1000).format(ExportDataModel.forType(FormattedRecord.class), records, rowHandler);
+
+        assertEquals(5000, rowHandler.rows.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(String.valueOf(i), rowHandler.rows.get(i).get(0));
+        }
+        assertFalse(FormattedRecord.formattingThreads.contains(Thread.currentThread().getName()));
+    }
+
+    @Test
+    public void shouldFormatBatchesBelowTheThresholdOnTheCallingThread() {
+        RecordingRowHandler rowHandler = new RecordingRowHandler();
+
+        new RowFormatter(1000).format(ExportDataModel.forType(FormattedRecord.class), records(999), rowHandler);
+
+        assertEquals(999, rowHandler.rows.size());
+        assertEquals(Collections.singleton(Thread.currentThread().getName()), FormattedRecord.formattingThreads);
+    }
+
+    @Test
+    public void shouldFormatARecordIteratorInOrder() {
+        List<FormattedRecord> records = records(25000);
+        RecordingRowHandler rowHandler = new RecordingRowHandler();
+
+        new RowFormatter(1000).format(ExportDataModel.forType(FormattedRecord.class), records.iterator(), rowHandler);
+
+        assertEquals(25000, rowHandler.rows.size());
+        assertEquals("24999", rowHandler.rows.get(24999).get(0));
+    }
+
+    private List<FormattedRecord> records(int count) {
+        FormattedRecord.formattingThreads.clear();
+        List<FormattedRecord> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            records.add(new FormattedRecord(i));
+        }
+        return records;
+    }
+}
+
+class FormattedRecord {
+    static final Set<String> formattingThreads = Collections.synchronizedSet(new HashSet<String>());
+
+    private final int id;
+
+    FormattedRecord(int id) {
+        this.id = id;
+    }
+
+    @ExportValue(index = 0)
+    public int getId() {
+        formattingThreads.add(Thread.currentThread().getName());
+        return id;
+    }
+}
@@ -0,0 +1,100 @@
+package org.motechproject.export.service;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.motechproject.export.builder.excel.model.ExcelEngine;
+import org.motechproject.export.model.AllCSVExportProcessors;
+import org.motechproject.export.model.AllExcelExportProcessors;
+import org.motechproject.export.service.sample.SampleCSVDataSource;
+import org.motechproject.export.service.sample.SampleCSVDataSourceWithParameter;
+import org.motechproject.export.service.sample.SampleExcelDataSource;
+import org.motechproject.export.writer.CSVWriter;
+import org.motechproject.export.writer.ExcelWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ExportJobServiceTest {
+
+    private File spoolDirectory;
+    private ExportService exportService;
+    private ExportJobService exportJobService;
+    private SampleCSVDataSourceWithParameter sampleCSVDataSourceWithParameter;
+
+    @Before
+    public void setUp() throws IOException {
+        AllExcelExportProcessors allExcelExportProcessors = new AllExcelExportProcessors();
+        allExcelExportProcessors.postProcessAfterInitialization(new SampleExcelDataSource(), "sampleExcelDataSource");
+        AllCSVExportProcessors allCSVExportProcessors = new AllCSVExportProcessors();
+        allCSVExportProcessors.postProcessAfterInitialization(new SampleCSVDataSource(), "sampleCSVDataSource");
+        sampleCSVDataSourceWithParameter = new SampleCSVDataSourceWithParameter();
+        allCSVExportProcessors.postProcessAfterInitialization(sampleCSVDataSourceWithParameter, "sampleCSVDataSourceWithParameter");
+        exportService = new ExportService(allExcelExportProcessors, allCSVExportProcessors, new ExcelWriter(), new CSVWriter());
+
+        spoolDirectory = File.createTempFile("exports", "");
+        spoolDirectory.delete();
+        exportJobService = new ExportJobService(exportService, spoolDirectory, 1, 1, TimeUnit.HOURS.toMillis(1));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        exportJobService.destroy();
+        FileUtils.deleteDirectory(spoolDirectory);
+    }
+
+    @Test
+    public void shouldSpoolAnExcelReportToAFileInTheBackground() throws Exception {
+        ExportJob exportJob = exportJobService.submitExcel("sampleExcel", "sampleExcel", ExcelEngine.SXSSF);
+
+        assertTrue(exportJob.awaitCompletion(10, TimeUnit.SECONDS));
+        assertEquals(ExportJob.Status.COMPLETED, exportJob.getStatus());
+        assertEquals("sampleExcel.xlsx", exportJob.getFileName());
+        assertEquals(3, exportJob.getRowsWritten());
+        assertEquals(spoolDirectory, exportJob.getResult().getParentFile());
+        assertEquals(exportJob.getBytesWritten(), exportJob.getResult().length());
+        assertEquals(exportJob, exportJobService.getJob(exportJob.getId()));
+    }
+
+    @Test
+    public void shouldPassTheParametersOfACSVReportToItsDataProvider() throws Exception {
+        ExportJob exportJob = exportJobService.submitCSV("sampleCSVWithParameter", "sampleReport", "parameters");
+
+        assertTrue(exportJob.awaitCompletion(10, TimeUnit.SECONDS));
+        assertEquals("parameters", sampleCSVDataSourceWithParameter.parameters);
+        assertEquals("sampleReport.csv", exportJob.getFileName());
+        assertTrue(FileUtils.readFileToString(exportJob.getResult(), "UTF-8").contains("id3"));
+        assertEquals(exportJob.getBytesWritten(), exportJob.getResult().length());
+    }
+
+    @Test
+    public void shouldFailAJobWhoseReportCannotBeGenerated() throws Exception {
+        ExportJob exportJob = exportJobService.submitCSV("unknownDataSource", "unknownReport", null);
+
+        assertTrue(exportJob.awaitCompletion(10, TimeUnit.SECONDS));
+        assertEquals(ExportJob.Status.FAILED, exportJob.getStatus());
+        assertTrue(exportJob.getFailure() != null);
+        assertNull(exportJob.getResult());
+        assertEquals(0, spoolDirectory.list().length);
+    }
+
+    @Test
+    public void shouldRemoveJobsAndTheirFilesOnceTheyExpire() throws Exception {
+        exportJobService.destroy();
+        exportJobService = new ExportJobService(exportService, spoolDirectory, 1, 1, 0);
+        ExportJob exportJob = exportJobService.submitCSV("sampleCSV", "sampleReport", null);
+        assertTrue(exportJob.awaitCompletion(10, TimeUnit.SECONDS));
+        File result = exportJob.getResult();
+        assertTrue(result.exists());
+
+        assertNull(exportJobService.getJob(exportJob.getId()));
+        assertFalse(result.exists());
+    }
+}
@@ -0,0 +1,367 @@
+package org.motechproject.export.service;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.motechproject.export.annotation.CSVDataSource;
+import org.motechproject.export.annotation.DataProvider;
+import org.motechproject.export.annotation.ExcelDataSource;
+import org.motechproject.export.annotation.ExcelReport;
+import org.motechproject.export.builder.excel.model.ExcelEngine;
+import org.motechproject.export.cache.ExportCache;
+import org.motechproject.export.metrics.ExportMetrics;
+import org.motechproject.export.metrics.ExportMetricsListener;
+import org.motechproject.export.model.AllCSVExportProcessors;
+import org.motechproject.export.model.AllExcelExportProcessors;
+import org.motechproject.export.service.sample.SampleCSVDataSource;
+import org.motechproject.export.service.sample.SampleCSVDataSourceWithParameter;
+import org.motechproject.export.service.sample.SampleData;
+import org.motechproject.export.service.sample.SampleExcelDataSource;
+import org.motechproject.export.writer.CSVWriter;
+import org.motechproject.export.writer.ExcelWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ExportServiceTest {
+
+    private ExportService exportService;
+    private List<ExportMetrics> publishedMetrics;
+    private AllExcelExportProcessors allExcelExportProcessors;
+    private AllCSVExportProcessors allCSVExportProcessors;
+    private SampleCSVDataSourceWithParameter sampleCSVDataSourceWithParameter;
+    private BlockingCSVDataSource blockingCSVDataSource;
+
+    @Before
+    public void setUp() {
+        allExcelExportProcessors = new AllExcelExportProcessors();
+        allExcelExportProcessors.postProcessAfterInitialization(new SampleExcelDataSource(), "sampleExcelDataSource");
+        allExcelExportProcessors.postProcessAfterInitialization(new StreamedExcelDataSource(), "streamedExcelDataSource");
+        allCSVExportProcessors = new AllCSVExportProcessors();
+        allCSVExportProcessors.postProcessAfterInitialization(new SampleCSVDataSource(), "sampleCSVDataSource");
+        sampleCSVDataSourceWithParameter = new SampleCSVDataSourceWithParameter();
+        allCSVExportProcessors.postProcessAfterInitialization(sampleCSVDataSourceWithParameter, "sampleCSVDataSourceWithParameter");
+        blockingCSVDataSource = new BlockingCSVDataSource();
+        allCSVExportProcessors.postProcessAfterInitialization(blockingCSVDataSource, "blockingCSVDataSource");
+        exportService = new ExportService(allExcelExportProcessors, allCSVExportProcessors, new ExcelWriter(), new CSVWriter());
+
+        publishedMetrics = Collections.synchronizedList(new ArrayList<ExportMetrics>());
+        exportService.setExportMetricsListeners(asList((ExportMetricsListener) new ExportMetricsListener() {
+            @Override
+            public void exportCompleted(ExportMetrics exportMetrics) {
+                publishedMetrics.add(exportMetrics);
+            }
+        }));
+    }
+
+    @Test
+    public void shouldPublishMetricsOfAnExcelExport() {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        exportService.exportAsExcel("sampleExcel", "sampleExcel", outputStream);
+
+        assertEquals(1, publishedMetrics.size());
+        ExportMetrics exportMetrics = publishedMetrics.get(0);
+        assertEquals("sampleExcel", exportMetrics.getReportName());
+        assertEquals("xls", exportMetrics.getFormat());
+        assertEquals(3, exportMetrics.getPageFetchTimes().size());
+        assertEquals(3, exportMetrics.getRowsWritten());
+        assertEquals(outputStream.size(), exportMetrics.getBytesWritten());
+        assertTrue(exportMetrics.getTotalTime() >= exportMetrics.getPageFetchTime() + exportMetrics.getWritingTime());
+        assertTrue(exportMetrics.isSuccessful());
+    }
+
+    @Test
+    public void shouldGenerateAReportWithTheEngineItIsSetTo() {
+        assertEquals(ExcelEngine.HSSF, exportService.excelEngine("sampleExcel", "sampleExcel"));
+        assertEquals(ExcelEngine.SXSSF, exportService.excelEngine("streamedExcel", "streamedExcel"));
+
+        exportService.exportAsExcel("streamedExcel", "streamedExcel", new ByteArrayOutputStream());
+
+        assertEquals("xlsx", publishedMetrics.get(0).getFormat());
+        assertEquals(1, publishedMetrics.get(0).getRowsWritten());
+    }
+
+    @Test
+    public void shouldPublishMetricsOfACSVExport() {
+        StringWriter writer = new StringWriter();
+
+        exportService.exportAsCSV("sampleCSV", writer);
+
+        assertEquals(1, publishedMetrics.size());
+        ExportMetrics exportMetrics = publishedMetrics.get(0);
+        assertEquals("csv", exportMetrics.getFormat());
+        assertEquals(3, exportMetrics.getRowsWritten());
+        assertEquals(writer.toString().length(), exportMetrics.getCharsWritten());
+        assertTrue(exportMetrics.getFormattingTime() >= 0);
+    }
+
+    @Test
+    public void shouldGzipACSVExport() throws IOException {
+        StringWriter plain = new StringWriter();
+        exportService.exportAsCSV("sampleCSV", plain);
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+
+        exportService.exportAsGzippedCSV("sampleCSV", gzipped, null);
+
+        assertEquals(plain.toString(), IOUtils.toString(new GZIPInputStream(new ByteArrayInputStream(gzipped.toByteArray())), "UTF-8"));
+        assertEquals(plain.toString().length(), publishedMetrics.get(1).getCharsWritten());
+        assertEquals(gzipped.size(), publishedMetrics.get(1).getBytesWritten());
+    }
+
+    @Test
+    public void shouldWriteACachedCSVExportFromTheCacheForTheSameParameters() {
+        exportService.setExportCache(new ExportCache(1024, 4096, new File(System.getProperty("java.io.tmpdir"))));
+        allCSVExportProcessors.get("sampleCSVWithParameter").setCacheMillis(60000);
+        StringWriter exported = new StringWriter();
+        exportService.exportAsCSV("sampleCSVWithParameter", exported, "parameters");
+
+        sampleCSVDataSourceWithParameter.isCalled = false;
+        StringWriter cached = new StringWriter();
+        exportService.exportAsCSV("sampleCSVWithParameter", cached, "parameters");
+
+        assertFalse(sampleCSVDataSourceWithParameter.isCalled);
+        assertEquals(exported.toString(), cached.toString());
+        assertTrue(publishedMetrics.get(1).isServedFromCache());
+        assertEquals(cached.toString().length(), publishedMetrics.get(1).getCharsWritten());
+
+        exportService.exportAsCSV("sampleCSVWithParameter", new StringWriter(), "other parameters");
+        assertTrue(sampleCSVDataSourceWithParameter.isCalled);
+        assertFalse(publishedMetrics.get(2).isServedFromCache());
+    }
+
+    @Test
+    public void shouldWriteACachedExcelReportFromTheCache() {
+        exportService.setExportCache(new ExportCache(64 * 1024, 64 * 1024, new File(System.getProperty("java.io.tmpdir"))));
+        allExcelExportProcessors.get("sampleExcel").setCacheMillis(60000);
+        ByteArrayOutputStream exported = new ByteArrayOutputStream();
+        exportService.exportAsExcel("sampleExcel", "sampleExcel", exported);
+
+        ByteArrayOutputStream cached = new ByteArrayOutputStream();
+        exportService.exportAsExcel("sampleExcel", "sampleExcel", cached);
+
+        assertArrayEquals(exported.toByteArray(), cached.toByteArray());
+        assertFalse(publishedMetrics.get(0).isServedFromCache());
+        assertTrue(publishedMetrics.get(1).isServedFromCache());
+        assertEquals(0, publishedMetrics.get(1).getPageFetchTimes().size());
+    }
+
+    @Test
+    public void shouldShareAnExportWithTheIdenticalExportsRequestedWhileItRuns() throws Exception {
+        StringWriter leader = new StringWriter();
+        Thread leading = export(leader, "parameters");
+        assertTrue(blockingCSVDataSource.called.await(10, TimeUnit.SECONDS));
+        StringWriter follower = new StringWriter();
+        Thread following = export(follower, "parameters");
+        awaitWaiting(following);
+
+        blockingCSVDataSource.release.countDown();
+        leading.join(10000);
+        following.join(10000);
+
+        assertEquals(1, blockingCSVDataSource.calls.get());
+        assertTrue(leader.toString().contains("id3"));
+        assertEquals(leader.toString(), follower.toString());
+        assertEquals(2, publishedMetrics.size());
+        assertTrue(publishedMetrics.get(0).isShared() != publishedMetrics.get(1).isShared());
+
+        exportService.exportAsCSV("blockingCSV", new StringWriter(), "parameters");
+        assertEquals(2, blockingCSVDataSource.calls.get());
+    }
+
+    @Test
+    public void shouldShareAnExportEvenIfItCouldNotBeWrittenToTheRequestThatStartedIt() throws Exception {
+        final AtomicReference<Throwable> leaderFailure = new AtomicReference<>();
+        Thread leading = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    exportService.exportAsCSV("blockingCSV", new ClosedWriter(), "parameters");
+                } catch (RuntimeException e) {
+                    leaderFailure.set(e);
+                }
+            }
+        });
+        leading.start();
+        assertTrue(blockingCSVDataSource.called.await(10, TimeUnit.SECONDS));
+        StringWriter follower = new StringWriter();
+        Thread following = export(follower, "parameters");
+        awaitWaiting(following);
+
+        blockingCSVDataSource.release.countDown();
+        leading.join(10000);
+        following.join(10000);
+
+        assertTrue(leaderFailure.get().getCause() instanceof IOException);
+        assertTrue(follower.toString().contains("id3"));
+        assertEquals(1, blockingCSVDataSource.calls.get());
+    }
+
+    @Test
+    public void shouldRenderAnExportWithASlowClientOnceForEveryRequestWaitingForIt() throws Exception {
+        SlowWriter slowClient = new SlowWriter();
+        Thread leading = export(slowClient, "parameters");
+        assertTrue(blockingCSVDataSource.called.await(10, TimeUnit.SECONDS));
+        List<StringWriter> followers = new ArrayList<>();
+        List<Thread> following = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            followers.add(new StringWriter());
+            following.add(export(followers.get(i), "parameters"));
+            awaitWaiting(following.get(i));
+        }
+
+        blockingCSVDataSource.release.countDown();
+        Thread.sleep(200);
+        slowClient.release.countDown();
+        leading.join(10000);
+        for (Thread thread : following) {
+            thread.join(10000);
+        }
+
+        assertEquals(1, blockingCSVDataSource.calls.get());
+        assertTrue(slowClient.toString().contains("id3"));
+        for (StringWriter follower : followers) {
+            assertEquals(slowClient.toString(), follower.toString());
+        }
+        assertEquals(4, publishedMetrics.size());
+    }
+
+    @Test
+    public void shouldFailARequestThatWaitsLongerThanTheShareTimeoutInsteadOfRenderingIt() throws Exception {
+        exportService.setShareTimeoutMillis(200);
+        SlowWriter slowClient = new SlowWriter();
+        Thread leading = export(slowClient, "parameters");
+        assertTrue(blockingCSVDataSource.called.await(10, TimeUnit.SECONDS));
+        Thread following = export(new StringWriter(), "parameters");
+        awaitWaiting(following);
+
+        blockingCSVDataSource.release.countDown();
+        following.join(10000);
+
+        assertFalse(following.isAlive());
+        assertTrue(publishedMetrics.get(0).getFailure().getCause() instanceof TimeoutException);
+        assertEquals(1, blockingCSVDataSource.calls.get());
+
+        slowClient.release.countDown();
+        leading.join(10000);
+    }
+
+    @Test
+    public void shouldNotShareOrCacheAnExportWhoseDataSourceWasInvalidatedWhileItRendered() throws Exception {
+        ExportCache exportCache = new ExportCache(1024, 4096, new File(System.getProperty("java.io.tmpdir")));
+        exportService.setExportCache(exportCache);
+        allCSVExportProcessors.get("blockingCSV").setCacheMillis(60000);
+        StringWriter stale = new StringWriter();
+        Thread leading = export(stale, "parameters");
+        assertTrue(blockingCSVDataSource.called.await(10, TimeUnit.SECONDS));
+
+        exportCache.invalidate("blockingCSV");
+        StringWriter fresh = new StringWriter();
+        Thread following = export(fresh, "parameters");
+        long deadline = System.currentTimeMillis() + 10000;
+        while (blockingCSVDataSource.calls.get() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        blockingCSVDataSource.release.countDown();
+        leading.join(10000);
+        following.join(10000);
+
+        assertEquals(2, blockingCSVDataSource.calls.get());
+        assertFalse(publishedMetrics.get(0).isShared());
+        assertFalse(publishedMetrics.get(1).isShared());
+        assertEquals(stale.toString(), fresh.toString());
+        assertEquals(1, exportCache.size());
+    }
+
+    private Thread export(final Writer writer, final Object parameters) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                exportService.exportAsCSV("blockingCSV", writer, parameters);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private void awaitWaiting(Thread thread) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (thread.getState() != Thread.State.WAITING && thread.getState() != Thread.State.TIMED_WAITING
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @ExcelDataSource(name = "streamedExcel")
+    public static class StreamedExcelDataSource {
+        @DataProvider
+        @ExcelReport(engine = ExcelEngine.SXSSF)
+        public List<SampleData> streamedExcel(int pageNumber) {
+            return pageNumber == 1 ? asList(new SampleData("id1")) : null;
+        }
+    }
+
+    @CSVDataSource(name = "blockingCSV")
+    public static class BlockingCSVDataSource {
+        CountDownLatch called = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+
+        @DataProvider
+        public List<SampleData> blockingCSV(Object parameters) throws InterruptedException {
+            calls.incrementAndGet();
+            called.countDown();
+            release.await();
+            return asList(new SampleData("id1"), new SampleData("id2"), new SampleData("id3"));
+        }
+    }
+
+    private static class SlowWriter extends StringWriter {
+        CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public void write(char[] chars, int offset, int length) {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            super.write(chars, offset, length);
+        }
+    }
+
+    private static class ClosedWriter extends Writer {
+        @Override
+        public void write(char[] chars, int offset, int length) throws IOException {
+            throw new IOException("Client went away");
+        }
+
+        @Override
+        public void flush() throws IOException {
+            throw new IOException("Client went away");
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package org.motechproject.importer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.motechproject.importer.annotation.CSVImporter;
+import org.motechproject.importer.annotation.Post;
+import org.motechproject.importer.annotation.Validate;
+import org.motechproject.importer.domain.Error;
+import org.motechproject.importer.domain.ImportProgress;
+import org.motechproject.importer.domain.ValidationResponse;
+import org.motechproject.importer.model.AllCSVDataImportProcessor;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ImportJobServiceTest {
+
+    private BlockingSampleImporter blockingSampleImporter;
+    private ImportJobService importJobService;
+
+    @Before
+    public void setUp() {
+        AllCSVDataImportProcessor allCSVDataImportProcessor = new AllCSVDataImportProcessor();
+        allCSVDataImportProcessor.postProcessAfterInitialization(new ChunkedSampleImporter(), "chunkedSampleImporter");
+        blockingSampleImporter = new BlockingSampleImporter();
+        allCSVDataImportProcessor.postProcessAfterInitialization(blockingSampleImporter, "blockingSampleImporter");
+        importJobService = new ImportJobService(allCSVDataImportProcessor, 1, 1, TimeUnit.HOURS.toMillis(1));
+    }
+
+    @After
+    public void tearDown() {
+        blockingSampleImporter.posting.countDown();
+        importJobService.destroy();
+    }
+
+    @Test
+    public void shouldCountTheRowsOfAnImportJobAsTheyAreImported() throws Exception {
+        ImportJob importJob = importJobService.submitContent("chunkedSampleEntity", "sampleX,y\nx1,y1\nx2,y2\nx3,y3\nx4,y4\nx5,y5\n", true);
+
+        assertTrue(importJob.awaitCompletion(10, TimeUnit.SECONDS));
+        assertEquals(ImportJob.Status.FAILED, importJob.getStatus());
+        assertEquals("invalid x3\n", importJob.getErrors());
+        ImportProgress progress = importJob.getProgress();
+        assertEquals(5, progress.getRowsParsed());
+        assertEquals(5, progress.getRowsValidated());
+        assertEquals(4, progress.getRowsPosted());
+        assertEquals(1, progress.getErrorCount());
+        assertEquals(importJob, importJobService.getJob(importJob.getId()));
+    }
+
+    @Test
+    public void shouldQueueTheJobsOfEachEntitySeparately() throws Exception {
+        ImportJob running = importJobService.submitContent("blockingSampleEntity", "sampleX\nx1\n", false);
+        ImportJob queued = importJobService.submitContent("blockingSampleEntity", "sampleX\nx2\n", false);
+        try {
+            importJobService.submitContent("blockingSampleEntity", "sampleX\nx3\n", false);
+            fail();
+        } catch (RejectedExecutionException expected) {
+        }
+
+        ImportJob otherEntity = importJobService.submitContent("chunkedSampleEntity", "sampleX,y\nx1,y1\n", false);
+        assertTrue(otherEntity.awaitCompletion(10, TimeUnit.SECONDS));
+        assertEquals(ImportJob.Status.COMPLETED, otherEntity.getStatus());
+        assertEquals(ImportJob.Status.QUEUED, queued.getStatus());
+
+        blockingSampleImporter.posting.countDown();
+        assertTrue(queued.awaitCompletion(10, TimeUnit.SECONDS));
+        assertEquals(ImportJob.Status.COMPLETED, running.getStatus());
+        assertEquals(1, queued.getProgress().getRowsPosted());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectAJobForAnEntityWithoutImporter() {
+        importJobService.submitContent("unknownEntity", "sampleX\n", false);
+    }
+
+    @CSVImporter(entity = "chunkedSampleEntity", bean = SampleBean.class, chunkSize = 2)
+    public static class ChunkedSampleImporter {
+
+        @Validate
+        public ValidationResponse validate(List<Object> objects) {
+            ValidationResponse validationResponse = new ValidationResponse(true);
+            for (Object object : objects) {
+                if (((SampleBean) object).getSampleX().equals("x3")) {
+                    validationResponse = new ValidationResponse(false);
+                    validationResponse.addError(new Error("invalid x3"));
+                    validationResponse.addInvalidRecord(object);
+                }
+            }
+            return validationResponse;
+        }
+
+        @Post
+        public void post(List<Object> objects) {
+        }
+    }
+
+    @CSVImporter(entity = "blockingSampleEntity", bean = SampleBean.class)
+    public static class BlockingSampleImporter {
+        CountDownLatch posting = new CountDownLatch(1);
+
+        @Post
+        public void post(List<Object> objects) throws InterruptedException {
+            posting.await();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.motechproject.importer.domain;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ValidationResponseTest {
+
+    @Test
+    public void shouldLeaveOutInvalidRowsFromTheValidRecords() {
+        List<Object> records = asList((Object) "a", "b", "c", "d");
+        ValidationResponse validationResponse = new ValidationResponse(false);
+        validationResponse.addInvalidRow(1);
+        validationResponse.addInvalidRow(3);
+
+        assertEquals(asList((Object) "a", "c"), validationResponse.validRecords(records));
+    }
+
+    @Test
+    public void shouldMatchInvalidRecordsByIdentityRatherThanEquals() {
+        EqualRecord first = new EqualRecord();
+        EqualRecord second = new EqualRecord();
+        ValidationResponse validationResponse = new ValidationResponse(false);
+        validationResponse.addInvalidRecord(second);
+
+        validationResponse.indexInvalidRecords(asList(first, second));
+
+        assertFalse(validationResponse.isInvalidRow(0));
+        assertTrue(validationResponse.isInvalidRow(1));
+        assertEquals(1, validationResponse.validRecords(asList(first, second)).size());
+        assertTrue(validationResponse.validRecords(asList(first, second)).get(0) == first);
+    }
+
+    @Test
+    public void shouldOffsetTheInvalidRowsOfAMergedResponse() {
+        ValidationResponse chunkResponse = new ValidationResponse(false);
+        chunkResponse.addInvalidRow(0);
+        chunkResponse.addError(new Error("invalid"));
+        ValidationResponse validationResponse = new ValidationResponse(true);
+
+        validationResponse.merge(chunkResponse, 5);
+
+        assertFalse(validationResponse.isValid());
+        assertEquals(1, validationResponse.getErrors().size());
+        assertTrue(validationResponse.isInvalidRow(5));
+        assertEquals(1, validationResponse.getInvalidRows().cardinality());
+    }
+
+    private static class EqualRecord {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof EqualRecord;
+        }
+
+        @Override
+        public int hashCode() {
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package org.motechproject.importer.model;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.motechproject.importer.SampleBean;
+import org.motechproject.importer.annotation.CSVImporter;
+import org.motechproject.importer.annotation.Post;
+import org.motechproject.importer.annotation.Validate;
+import org.motechproject.importer.domain.CSVImportResponse;
+import org.motechproject.importer.domain.Error;
+import org.motechproject.importer.domain.FileImportResult;
+import org.motechproject.importer.domain.ValidationResponse;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CSVDataImportProcessorTest {
+
+    private static final String CONTENT = "sampleX,y\nx1,y1\nx2,y2\n\nx3,y3\nx4,y4\nx5,y5\n";
+
+    @Test
+    public void shouldValidateAndPostEveryChunkOfTheFile() throws Exception {
+        ChunkedSampleImporter importer = new ChunkedSampleImporter();
+
+        String errors = new CSVDataImportProcessor(importer).processContent(CONTENT, false);
+
+        assertNull(errors);
+        assertEquals(asList(2, 2, 1), importer.validatedChunkSizes);
+        assertEquals(asList("x1", "x2", "x3", "x4", "x5"), importer.postedSampleXs);
+    }
+
+    @Test
+    public void shouldStopAtTheFirstInvalidChunkWhenValidRecordsAreNotUpdated() throws Exception {
+        ChunkedSampleImporter importer = new ChunkedSampleImporter();
+        importer.invalidSampleX = "x3";
+
+        String errors = new CSVDataImportProcessor(importer).processContent(CONTENT, false);
+
+        assertEquals("invalid x3\n", errors);
+        assertEquals(asList(2, 2), importer.validatedChunkSizes);
+        assertEquals(asList("x1", "x2"), importer.postedSampleXs);
+    }
+
+    @Test
+    public void shouldPostTheValidRecordsOfEveryChunkWhenValidRecordsAreUpdated() throws Exception {
+        ChunkedSampleImporter importer = new ChunkedSampleImporter();
+        importer.invalidSampleX = "x3";
+
+        String errors = new CSVDataImportProcessor(importer).processContent(CONTENT, true);
+
+        assertEquals("invalid x3\n", errors);
+        assertEquals(asList("x1", "x2", "x4", "x5"), importer.postedSampleXs);
+    }
+
+    @Test
+    public void shouldPostPipelinedChunksInFileOrder() throws Exception {
+        ChunkedSampleImporter importer = new ChunkedSampleImporter();
+        importer.invalidSampleX = "x3";
+        CSVDataImportProcessor csvDataImportProcessor = new CSVDataImportProcessor(importer);
+        csvDataImportProcessor.setPipelineDepth(1);
+
+        String errors = csvDataImportProcessor.processContent(CONTENT, true);
+
+        assertEquals("invalid x3\n", errors);
+        assertEquals(asList(2, 2, 1), importer.validatedChunkSizes);
+        assertEquals(asList("x1", "x2", "x4", "x5"), importer.postedSampleXs);
+    }
+
+    @Test
+    public void shouldStopPostingAPipelinedImportAtTheFirstInvalidChunk() throws Exception {
+        ChunkedSampleImporter importer = new ChunkedSampleImporter();
+        importer.invalidSampleX = "x3";
+        CSVDataImportProcessor csvDataImportProcessor = new CSVDataImportProcessor(importer);
+        csvDataImportProcessor.setPipelineDepth(1);
+
+        String errors = csvDataImportProcessor.processContent(CONTENT, false);
+
+        assertEquals("invalid x3\n", errors);
+        assertEquals(asList("x1", "x2"), importer.postedSampleXs);
+    }
+
+    @Test
+    public void shouldValidateBatchesInParallelAndMergeTheResponsesInFileOrder() throws Exception {
+        StringBuilder content = new StringBuilder("sampleX,y\n");
+        for (int i = 0; i < 2500; i++) {
+            content.append("x").append(i).append(",y\n");
+        }
+        ParallelValidatedSampleImporter importer = new ParallelValidatedSampleImporter();
+
+        String errors = new CSVDataImportProcessor(importer).processContent(content.toString(), true);
+
+        assertEquals(3, importer.validatedBatches.get());
+        assertFalse(importer.validatingThreads.contains(Thread.currentThread().getName()));
+        assertEquals("invalid x0\ninvalid x1000\ninvalid x2000\n", errors);
+        assertEquals(2497, importer.posted.size());
+        assertEquals("x1", importer.posted.get(0).getSampleX());
+        assertEquals("x1001", importer.posted.get(999).getSampleX());
+    }
+
+    @Test
+    public void shouldImportFilesConcurrentlyAndReportEveryFile() throws Exception {
+        File directory = temporaryDirectory();
+        String first = csvFile(directory, "first.csv", "x1");
+        String invalid = csvFile(directory, "second.csv", "x3");
+        String third = csvFile(directory, "third.csv", "x5");
+        ChunkedSampleImporter importer = new ChunkedSampleImporter();
+        importer.invalidSampleX = "x3";
+        CSVDataImportProcessor csvDataImportProcessor = new CSVDataImportProcessor(importer);
+        csvDataImportProcessor.setFileConcurrency(3);
+
+        CSVImportResponse csvImportResponse = csvDataImportProcessor.process(false, first, invalid, third);
+
+        assertFalse(csvImportResponse.isImportSuccessful());
+        assertEquals("first.csv", csvImportResponse.getLastProcessedFileName());
+        List<FileImportResult> fileImportResults = csvImportResponse.getFileImportResults();
+        assertEquals(3, fileImportResults.size());
+        assertTrue(fileImportResults.get(0).isImportSuccessful());
+        assertFalse(fileImportResults.get(1).isImportSuccessful());
+        assertEquals("invalid x3", fileImportResults.get(1).getErrors().get(0).getMessage());
+        assertTrue(fileImportResults.get(2).isImportSuccessful());
+        assertTrue(new File(directory, "second-errors.csv").exists());
+        assertEquals(new HashSet<>(asList("x1", "x5")), new HashSet<>(importer.postedSampleXs));
+    }
+
+    @Test
+    public void shouldStopAtTheFirstFailingFileWhenFilesAreImportedOneByOne() throws Exception {
+        File directory = temporaryDirectory();
+        ChunkedSampleImporter importer = new ChunkedSampleImporter();
+        importer.invalidSampleX = "x3";
+
+        CSVImportResponse csvImportResponse = new CSVDataImportProcessor(importer).process(false,
+                csvFile(directory, "first.csv", "x1"), csvFile(directory, "second.csv", "x3"), csvFile(directory, "third.csv", "x5"));
+
+        assertFalse(csvImportResponse.isImportSuccessful());
+        assertEquals("first.csv", csvImportResponse.getLastProcessedFileName());
+        assertEquals(2, csvImportResponse.getFileImportResults().size());
+        assertTrue(new File(directory, "errors.csv").exists());
+        assertEquals(asList("x1"), importer.postedSampleXs);
+    }
+
+    @Test
+    public void shouldBindEachParseToTheHeaderOfItsOwnContent() {
+        CSVDataImportProcessor csvDataImportProcessor = new CSVDataImportProcessor(new ChunkedSampleImporter());
+
+        List<Object> first = csvDataImportProcessor.parse(new StringReader("sampleX,y\nx1,y1\n"));
+        List<Object> second = csvDataImportProcessor.parse(new StringReader("y,sampleX,unknown\ny2,x2,z2\n"));
+
+        assertEquals("x1", ((SampleBean) first.get(0)).getSampleX());
+        assertEquals("y1", ((SampleBean) first.get(0)).getSampleY());
+        assertEquals("x2", ((SampleBean) second.get(0)).getSampleX());
+        assertEquals("y2", ((SampleBean) second.get(0)).getSampleY());
+    }
+
+    @Test
+    public void shouldResumeFromTheCheckpointOfTheLastPostedChunk() throws Exception {
+        File file = new File(temporaryDirectory(), "checkpointed.csv");
+        FileUtils.writeStringToFile(file, CONTENT);
+        CheckpointedSampleImporter importer = new CheckpointedSampleImporter();
+        importer.failingSampleX = "x3";
+
+        assertFalse(new CSVDataImportProcessor(importer).process(false, file.getPath()).isImportSuccessful());
+        assertEquals(asList("x1", "x2"), importer.postedSampleXs);
+        assertTrue(new File(file.getPath() + ".checkpoint").exists());
+
+        importer.failingSampleX = null;
+        importer.postedSampleXs.clear();
+        assertTrue(new CSVDataImportProcessor(importer).process(false, file.getPath()).isImportSuccessful());
+        assertEquals(asList("x3", "x4", "x5"), importer.postedSampleXs);
+        assertFalse(new File(file.getPath() + ".checkpoint").exists());
+    }
+
+    @Test
+    public void shouldImportFromTheStartWhenTheCheckpointedPartOfTheFileHasChanged() throws Exception {
+        File file = new File(temporaryDirectory(), "changed.csv");
+        FileUtils.writeStringToFile(file, CONTENT);
+        CheckpointedSampleImporter importer = new CheckpointedSampleImporter();
+        importer.failingSampleX = "x3";
+        new CSVDataImportProcessor(importer).process(false, file.getPath());
+
+        FileUtils.writeStringToFile(file, CONTENT.replace("x1", "z1"));
+        importer.failingSampleX = null;
+        importer.postedSampleXs.clear();
+        new CSVDataImportProcessor(importer).process(false, file.getPath());
+
+        assertEquals(asList("z1", "x2", "x3", "x4", "x5"), importer.postedSampleXs);
+    }
+
+    @Test
+    public void shouldSkipFilesImportedBeforeTheFileThatFailed() throws Exception {
+        File directory = temporaryDirectory();
+        String first = csvFile(directory, "first.csv", "x1");
+        String second = csvFile(directory, "second.csv", "x2");
+        CheckpointedSampleImporter importer = new CheckpointedSampleImporter();
+        importer.failingSampleX = "x2";
+        new CSVDataImportProcessor(importer).process(false, first, second);
+
+        importer.failingSampleX = null;
+        importer.postedSampleXs.clear();
+        assertTrue(new CSVDataImportProcessor(importer).process(false, first, second).isImportSuccessful());
+
+        assertEquals(asList("x2"), importer.postedSampleXs);
+        assertFalse(new File(first + ".checkpoint").exists());
+    }
+
+    private File temporaryDirectory() throws IOException {
+        File directory = File.createTempFile("import", "");
+        directory.delete();
+        directory.mkdir();
+        directory.deleteOnExit();
+        return directory;
+    }
+
+    private String csvFile(File directory, String name, String sampleX) throws IOException {
+        File file = new File(directory, name);
+        FileUtils.writeStringToFile(file, "sampleX,y\n" + sampleX + ",y\n");
+        file.deleteOnExit();
+        return file.getPath();
+    }
+
+    @CSVImporter(entity = "parallelValidatedSampleEntity", bean = SampleBean.class)
+    public static class ParallelValidatedSampleImporter {
+        AtomicInteger validatedBatches = new AtomicInteger();
+        Set<String> validatingThreads = Collections.synchronizedSet(new HashSet<String>());
+        List<SampleBean> posted = new ArrayList<>();
+
+        @Validate(threadSafe = true, batchSize = 1000)
+        public ValidationResponse validate(List<Object> objects) {
+            validatedBatches.incrementAndGet();
+            validatingThreads.add(Thread.currentThread().getName());
+            ValidationResponse validationResponse = new ValidationResponse(false);
+            validationResponse.addError(new Error("invalid " + ((SampleBean) objects.get(0)).getSampleX()));
+            validationResponse.addInvalidRow(0);
+            return validationResponse;
+        }
+
+        @Post
+        public void post(List<Object> objects) {
+            for (Object object : objects) {
+                posted.add((SampleBean) object);
+            }
+        }
+    }
+
+    @CSVImporter(entity = "checkpointedSampleEntity", bean = SampleBean.class, chunkSize = 2, checkpoint = true)
+    public static class CheckpointedSampleImporter {
+        String failingSampleX;
+        List<String> postedSampleXs = new ArrayList<>();
+
+        @Post
+        public void post(List<Object> objects) {
+            for (Object object : objects) {
+                if (((SampleBean) object).getSampleX().equals(failingSampleX)) {
+                    throw new IllegalStateException("could not post " + failingSampleX);
+                }
+            }
+            for (Object object : objects) {
+                postedSampleXs.add(((SampleBean) object).getSampleX());
+            }
+        }
+    }
+
+    @CSVImporter(entity = "chunkedSampleEntity", bean = SampleBean.class, chunkSize = 2)
+    public static class ChunkedSampleImporter {
+        String invalidSampleX;
+        List<Integer> validatedChunkSizes = Collections.synchronizedList(new ArrayList<Integer>());
+        List<String> postedSampleXs = Collections.synchronizedList(new ArrayList<String>());
+
+        @Validate
+        public ValidationResponse validate(List<Object> objects) {
+            validatedChunkSizes.add(objects.size());
+            ValidationResponse validationResponse = new ValidationResponse(true);
+            for (Object object : objects) {
+                SampleBean sampleBean = (SampleBean) object;
+                if (sampleBean.getSampleX().equals(invalidSampleX)) {
+                    validationResponse = new ValidationResponse(false);
+                    validationResponse.addError(new Error("invalid " + invalidSampleX));
+                    validationResponse.addInvalidRecord(sampleBean);
+                }
+            }
+            return validationResponse;
+        }
+
+        @Post
+        public void post(List<Object> objects) {
+            for (Object object : objects) {
+                postedSampleXs.add(((SampleBean) object).getSampleX());
+            }
+        }
+    }
+}
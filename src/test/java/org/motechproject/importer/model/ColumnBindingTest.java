@@ -0,0 +1,155 @@
+package org.motechproject.importer.model;
+
+import au.com.bytecode.opencsv.CSVReader;
+import au.com.bytecode.opencsv.bean.HeaderColumnNameTranslateMappingStrategy;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class ColumnBindingTest {
+
+    private static final String HEADER = "count,msisdn,amount,active,boxedCount,boxedMsisdn,boxedAmount,boxedActive,name,status\n";
+
+    @Test
+    public void shouldConvertValuesExactlyAsThePropertyEditorsOfCsvToBeanDo() {
+        String content = HEADER
+                + "1,9100000001,1.5,true,2,9100000002,2.5,false,  padded name ,ACTIVE\n"
+                + " -12 ,+42,-0.25,TRUE,010,0x1F,1e3,False,,INACTIVE\n"
+                + "#ff,-9223372036854775808,1,tRuE,-2147483648,9223372036854775807,-0,true,\" quoted \",ACTIVE\n"
+                + "0,007,0,false,2147483647,-0X10,3.0,FALSE,x,INACTIVE\n";
+
+        List<Object> expected = opencsvBeans(content);
+        List<Object> actual = beans(content, "yyyy-MM-dd");
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).toString(), actual.get(i).toString());
+        }
+    }
+
+    @Test
+    public void shouldFailOnValuesThePropertyEditorsReject() {
+        String[] rows = {"x,1,1,true,1,1,1,true,a,ACTIVE", "1,1,1,yes,1,1,1,true,a,ACTIVE", "1,1,1,true,,1,1,true,a,ACTIVE",
+                "2147483648,1,1,true,1,1,1,true,a,ACTIVE", "1,1,1,true,1,1,1,true,a,UNKNOWN"};
+        for (String row : rows) {
+            try {
+                beans(HEADER + row, "yyyy-MM-dd");
+                fail("Expected " + row + " to be rejected");
+            } catch (RuntimeException e) {
+                assertEquals("Error parsing CSV!", e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void shouldParseDatesWithTheDateFormatOfTheImporterAndWriteFieldsWithoutSetters() throws Exception {
+        List<Object> beans = beans("registeredOn,district\n17/10/2013,North\n  ,South\n", "dd/MM/yyyy");
+
+        TypedBean first = (TypedBean) beans.get(0);
+        assertEquals(new SimpleDateFormat("yyyy-MM-dd").parse("2013-10-17"), first.getRegisteredOn());
+        assertEquals("North", first.district);
+        assertNull(((TypedBean) beans.get(1)).getRegisteredOn());
+    }
+
+    private List<Object> beans(String content, String dateFormat) {
+        ColumnBinding columnBinding = new ColumnBinding(TypedBean.class, columnMapping(), dateFormat);
+        return new BeanReader(new StringReader(content), columnBinding, Integer.MAX_VALUE).nextChunk();
+    }
+
+    private List<Object> opencsvBeans(String content) {
+        HeaderColumnNameTranslateMappingStrategy strategy = new HeaderColumnNameTranslateMappingStrategy();
+        strategy.setType(TypedBean.class);
+        strategy.setColumnMapping(columnMapping());
+        return new MyCsvToBean().parse(strategy, new CSVReader(new StringReader(content)));
+    }
+
+    private Map<String, String> columnMapping() {
+        Map<String, String> mapping = new HashMap<>();
+        for (String column : (HEADER.trim() + ",registeredOn,district").split(",")) {
+            mapping.put(column, column);
+        }
+        return mapping;
+    }
+
+    public enum Status {
+        ACTIVE, INACTIVE
+    }
+
+    public static class TypedBean {
+        private int count;
+        private long msisdn;
+        private double amount;
+        private boolean active;
+        private Integer boxedCount;
+        private Long boxedMsisdn;
+        private Double boxedAmount;
+        private Boolean boxedActive;
+        private String name;
+        private Status status;
+        private Date registeredOn;
+        private String district;
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+
+        public void setMsisdn(long msisdn) {
+            this.msisdn = msisdn;
+        }
+
+        public void setAmount(double amount) {
+            this.amount = amount;
+        }
+
+        public void setActive(boolean active) {
+            this.active = active;
+        }
+
+        public void setBoxedCount(Integer boxedCount) {
+            this.boxedCount = boxedCount;
+        }
+
+        public void setBoxedMsisdn(Long boxedMsisdn) {
+            this.boxedMsisdn = boxedMsisdn;
+        }
+
+        public void setBoxedAmount(Double boxedAmount) {
+            this.boxedAmount = boxedAmount;
+        }
+
+        public void setBoxedActive(Boolean boxedActive) {
+            this.boxedActive = boxedActive;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public void setStatus(Status status) {
+            this.status = status;
+        }
+
+        public Date getRegisteredOn() {
+            return registeredOn;
+        }
+
+        public void setRegisteredOn(Date registeredOn) {
+            this.registeredOn = registeredOn;
+        }
+
+        @Override
+        public String toString() {
+            return count + "|" + msisdn + "|" + amount + "|" + active + "|" + boxedCount + "|" + boxedMsisdn + "|"
+                    + boxedAmount + "|" + boxedActive + "|[" + name + "]|" + status;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package org.motechproject.importer.model;
+
+import au.com.bytecode.opencsv.CSVReader;
+import org.apache.commons.lang.StringUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CsvTokenizerTest {
+
+    private static final String[] CONTENTS = {
+            "",
+            "a,b,c",
+            "a,b,c\n1,2,3\n",
+            "a,,c\r\n,\r\n\n  , \t\n",
+            "\"quoted, field\",plain\n",
+            "\"multi\nline\",x\r\n\"ends\r\nwith crlf\"\n",
+            "\"doubled \"\"quotes\"\"\",\"\"\"\",\"\"",
+            "\"escaped \\\" quote\",\"escaped \\\\ escape\",\"lone \\x escape\"",
+            "outside \\escape,trailing escape\\\nab\\",
+            "a,bc\"d\"ef,g\n\"a\"b,x\"y,\"z\"\n",
+            "\"unterminated\nquote",
+            "\"\"\n\"",
+    };
+
+    @Test
+    public void shouldSplitRecordsExactlyAsOpencsvDoes() throws IOException {
+        for (String content : CONTENTS) {
+            assertSameRecords(content, CsvTokenizer.DEFAULT_BUFFER_SIZE);
+            assertSameRecords(content, 2);
+        }
+    }
+
+    @Test
+    public void shouldSplitRandomContentExactlyAsOpencsvDoes() throws IOException {
+        Random random = new Random(42);
+        char[] alphabet = {'a', 'b', ' ', ',', ',', '"', '"', '\\', '\n', '\r'};
+        for (int i = 0; i < 5000; i++) {
+            char[] content = new char[random.nextInt(40)];
+            for (int j = 0; j < content.length; j++) {
+                content[j] = alphabet[random.nextInt(alphabet.length)];
+            }
+            assertSameRecords(new String(content), 2 + random.nextInt(8));
+        }
+    }
+
+    @Test
+    public void shouldDetectBlankRecords() throws IOException {
+        CsvTokenizer tokenizer = new CsvTokenizer(new StringReader(" , \t\n\"\",x\n"));
+        CsvRecord record = new CsvRecord();
+
+        assertTrue(tokenizer.next(record));
+        assertTrue(record.isBlank());
+        assertTrue(tokenizer.next(record));
+        assertFalse(record.isBlank());
+        assertEquals("x", record.field(1));
+        assertFalse(tokenizer.next(record));
+    }
+
+    @Test
+    public void shouldTrackTheByteOffsetOfEachRecord() throws IOException {
+        String[] records = {"a,\u00fc\r\n", "\"multi\nline \u20ac\",x\n", "\ud834\udd1e,b\r", "\r\n", "last"};
+        for (Charset charset : Arrays.asList(Charset.forName("UTF-8"), Charset.forName("UTF-16LE"))) {
+            byte[] content = StringUtils.join(records).getBytes(charset);
+            for (int bufferSize : new int[]{2, 3, CsvTokenizer.DEFAULT_BUFFER_SIZE}) {
+                CsvTokenizer tokenizer = new CsvTokenizer(new InputStreamReader(new ByteArrayInputStream(content), charset), ',', '"', '\\', bufferSize, charset, 0);
+                CsvRecord record = new CsvRecord();
+                long expectedOffset = 0;
+                for (String expectedRecord : records) {
+                    expectedOffset += expectedRecord.getBytes(charset).length;
+                    assertTrue(tokenizer.next(record));
+                    assertEquals(charset + " " + bufferSize, expectedOffset, tokenizer.byteOffset());
+                }
+                assertFalse(tokenizer.next(record));
+            }
+        }
+    }
+
+    private void assertSameRecords(String content, int bufferSize) throws IOException {
+        CSVReader csvReader = new CSVReader(new StringReader(content), ',');
+        List<List<String>> expected = new ArrayList<>();
+        String[] line;
+        while ((line = csvReader.readNext()) != null) {
+            expected.add(Arrays.asList(line));
+        }
+
+        CsvTokenizer tokenizer = new CsvTokenizer(new StringReader(content), ',', '"', '\\', bufferSize);
+        CsvRecord record = new CsvRecord();
+        List<List<String>> actual = new ArrayList<>();
+        while (tokenizer.next(record)) {
+            actual.add(Arrays.asList(record.toArray()));
+        }
+
+        assertEquals("Records of " + content.replace("\r", "\\r").replace("\n", "\\n"), expected, actual);
+    }
+}
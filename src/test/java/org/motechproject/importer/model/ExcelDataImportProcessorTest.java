@@ -0,0 +1,190 @@
+package org.motechproject.importer.model;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Test;
+import org.motechproject.importer.annotation.ExcelImporter;
+import org.motechproject.importer.annotation.Post;
+import org.motechproject.importer.domain.CSVImportResponse;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ExcelDataImportProcessorTest {
+
+    @Test
+    public void shouldReadTheFirstSheetOfXlsAndXlsxFilesRowByRow() throws Exception {
+        for (Workbook workbook : asList(new HSSFWorkbook(), new XSSFWorkbook())) {
+            File file = excelFile(workbook);
+
+            List<Object> beans = new ExcelDataImportProcessor(new ExcelSampleImporter()).parse(file);
+
+            assertEquals(2, beans.size());
+            ExcelSampleBean first = (ExcelSampleBean) beans.get(0);
+            assertEquals("Asha", first.name);
+            assertEquals(42, first.count);
+            assertEquals(1.25, first.amount, 0);
+            assertTrue(first.active);
+            assertEquals(date("2013-10-17"), first.registeredOn);
+            assertNull(first.remarks);
+            ExcelSampleBean second = (ExcelSampleBean) beans.get(1);
+            assertEquals("Ravi", second.name);
+            assertEquals(42, second.count);
+            assertEquals(3, second.amount, 0);
+            assertEquals(false, second.active);
+            assertEquals(date("2013-10-18"), second.registeredOn);
+            assertEquals("late", second.remarks);
+        }
+    }
+
+    @Test
+    public void shouldImportExcelFilesInChunks() throws Exception {
+        ExcelSampleImporter importer = new ExcelSampleImporter();
+        File file = excelFile(new XSSFWorkbook());
+
+        CSVImportResponse response = new ExcelDataImportProcessor(importer).process(false, file.getPath());
+
+        assertTrue(response.isImportSuccessful());
+        assertEquals(asList(1, 1), importer.postedChunkSizes);
+    }
+
+    @Test
+    public void shouldParseExcelContentFromAnInputStream() throws Exception {
+        File file = excelFile(new HSSFWorkbook());
+
+        try (InputStream input = new FileInputStream(file)) {
+            List<Object> beans = new ExcelDataImportProcessor(new ExcelSampleImporter()).parse(input);
+            assertEquals("Ravi", ((ExcelSampleBean) beans.get(1)).name);
+        }
+    }
+
+    @Test
+    public void shouldImportExcelContentFromAnInputStream() throws Exception {
+        ExcelSampleImporter importer = new ExcelSampleImporter();
+        File file = excelFile(new XSSFWorkbook());
+
+        try (InputStream input = new FileInputStream(file)) {
+            assertNull(new ExcelDataImportProcessor(importer).processContent(input, false));
+        }
+        assertEquals(asList(1, 1), importer.postedChunkSizes);
+    }
+
+    @Test
+    public void shouldStreamExcelContentRowsAndDeleteTheSpooledContentOnceDone() throws Exception {
+        File file = excelFile(new XSSFWorkbook());
+        int spooledFiles = spooledFiles();
+
+        try (InputStream input = new FileInputStream(file);
+             ChunkReader chunkReader = new ExcelDataImportProcessor(new ExcelSampleImporter()).chunkReader(input, 1)) {
+            assertTrue(chunkReader instanceof RecordChunkReader);
+            assertEquals(1, chunkReader.nextChunk().size());
+            assertEquals(spooledFiles + 1, spooledFiles());
+        }
+        assertEquals(spooledFiles, spooledFiles());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void shouldNotCheckpointExcelImports() {
+        new ExcelDataImportProcessor(new ExcelSampleImporter()).setCheckpointing(true);
+    }
+
+    private static int spooledFiles() {
+        String[] files = new File(System.getProperty("java.io.tmpdir")).list(new FilenameFilter() {
+            @Override
+            public boolean accept(File directory, String name) {
+                return name.startsWith("excel-import");
+            }
+        });
+        return files != null ? files.length : 0;
+    }
+
+    private File excelFile(Workbook workbook) throws IOException {
+        CellStyle dateStyle = workbook.createCellStyle();
+        dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("yyyy-mm-dd"));
+
+        Sheet sheet = workbook.createSheet("records");
+        Row header = sheet.createRow(0);
+        String[] columns = {"name", "count", "amount", "active", "registeredOn", "remarks"};
+        for (int i = 0; i < columns.length; i++) {
+            header.createCell(i).setCellValue(columns[i]);
+        }
+
+        Row first = sheet.createRow(1);
+        first.createCell(0).setCellValue("Asha");
+        first.createCell(1).setCellValue(42);
+        first.createCell(2).setCellValue(1.25);
+        first.createCell(3).setCellValue(true);
+        Cell registeredOn = first.createCell(4);
+        registeredOn.setCellValue(date("2013-10-17"));
+        registeredOn.setCellStyle(dateStyle);
+
+        sheet.createRow(2).createCell(1).setCellStyle(dateStyle);
+
+        Row second = sheet.createRow(3);
+        second.createCell(0).setCellFormula("CONCATENATE(\"Ra\",\"vi\")");
+        second.createCell(1).setCellFormula("40+2");
+        second.createCell(2).setCellValue(3);
+        second.createCell(3).setCellValue(false);
+        second.createCell(4).setCellValue("18/10/2013");
+        second.createCell(5).setCellValue("late");
+        FormulaEvaluator evaluator = workbook.getCreationHelper().createFormulaEvaluator();
+        evaluator.evaluateFormulaCell(second.getCell(0));
+        evaluator.evaluateFormulaCell(second.getCell(1));
+
+        workbook.createSheet("ignored").createRow(0).createCell(0).setCellValue("name");
+
+        File file = File.createTempFile("excel-import", workbook instanceof HSSFWorkbook ? ".xls" : ".xlsx");
+        file.deleteOnExit();
+        try (OutputStream output = new FileOutputStream(file)) {
+            workbook.write(output);
+        }
+        return file;
+    }
+
+    private static Date date(String date) {
+        try {
+            return new SimpleDateFormat("yyyy-MM-dd").parse(date);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @ExcelImporter(entity = "excelSampleEntity", bean = ExcelSampleBean.class, chunkSize = 1, dateFormat = "dd/MM/yyyy")
+    public static class ExcelSampleImporter {
+        List<Integer> postedChunkSizes = new ArrayList<>();
+
+        @Post
+        public void post(List<Object> objects) {
+            postedChunkSizes.add(objects.size());
+        }
+    }
+
+    public static class ExcelSampleBean {
+        private String name;
+        private int count;
+        private double amount;
+        private boolean active;
+        private Date registeredOn;
+        private String remarks;
+    }
+}
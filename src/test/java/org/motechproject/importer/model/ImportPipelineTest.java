@@ -0,0 +1,92 @@
+package org.motechproject.importer.model;
+
+import org.junit.Test;
+import org.motechproject.importer.domain.ValidationResponse;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class ImportPipelineTest {
+
+    private static final String CONTENT = "sampleX,y\nx1,y1\nx2,y2\nx3,y3\nx4,y4\nx5,y5\n";
+
+    @Test
+    public void shouldRunEachStageOnItsOwnThreadAndReportWhatItDid() throws Exception {
+        final List<String> posted = new ArrayList<>();
+        final List<String> validatingThreads = Collections.synchronizedList(new ArrayList<String>());
+        ImportPipeline pipeline = new ImportPipeline(beanReader(), 1) {
+            @Override
+            ValidationResponse validate(List<Object> chunk) {
+                validatingThreads.add(Thread.currentThread().getName());
+                return new ValidationResponse(true);
+            }
+
+            @Override
+            boolean post(List<Object> chunk, ValidationResponse validationResponse, long byteOffset) {
+                for (Object bean : chunk) {
+                    posted.add(((PipelinedBean) bean).sampleX);
+                }
+                return true;
+            }
+        };
+
+        assertEquals(3, pipeline.run("sample.csv"));
+
+        assertEquals(asList("x1", "x2", "x3", "x4", "x5"), posted);
+        assertEquals("import-validate-sample.csv", validatingThreads.get(0));
+        List<String> stageNames = new ArrayList<>();
+        for (ImportPipeline.Stage stage : pipeline.getStages()) {
+            stageNames.add(stage.getName());
+            assertEquals(5, stage.getRecords());
+            assertEquals(3, stage.getChunks());
+            assertFalse(stage.getMaxQueueDepth() > 1);
+        }
+        assertEquals(asList("read", "bind", "validate", "post"), stageNames);
+    }
+
+    @Test
+    public void shouldThrowTheFailureOfAStageAfterPostingTheChunksBeforeIt() throws Exception {
+        final List<Integer> postedChunkSizes = new ArrayList<>();
+        ImportPipeline pipeline = new ImportPipeline(beanReader(), 1) {
+            @Override
+            ValidationResponse validate(List<Object> chunk) {
+                if (((PipelinedBean) chunk.get(0)).sampleX.equals("x3")) {
+                    throw new IllegalStateException("could not validate x3");
+                }
+                return new ValidationResponse(true);
+            }
+
+            @Override
+            boolean post(List<Object> chunk, ValidationResponse validationResponse, long byteOffset) {
+                postedChunkSizes.add(chunk.size());
+                return true;
+            }
+        };
+
+        try {
+            pipeline.run("sample.csv");
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("could not validate x3", e.getMessage());
+        }
+        assertEquals(asList(2), postedChunkSizes);
+    }
+
+    private BeanReader beanReader() {
+        HashMap<String, String> columnMapping = new HashMap<>();
+        columnMapping.put("sampleX", "sampleX");
+        return new BeanReader(new StringReader(CONTENT), new ColumnBinding(PipelinedBean.class, columnMapping), 2);
+    }
+
+    public static class PipelinedBean {
+        private String sampleX;
+    }
+}